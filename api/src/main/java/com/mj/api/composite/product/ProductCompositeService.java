@@ -4,17 +4,27 @@ import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.util.List;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Api(description = "REST API for composite product information")
 public interface ProductCompositeService {
 
+    /**
+     * Sample usage: curl -X POST -H "Content-Type: application/json" $HOST:$PORT/product-composite?confirm=true -d ...
+     *
+     * @param body
+     * @param confirm wait for the broker to acknowledge every event before responding
+     * @return the ids, and when confirmed the partitions and offsets, of the published events
+     */
     @ApiOperation(
         value = "${api.product-composite.create-product.description}",
         notes = "${api.product-composite.create-product.notes}"
@@ -27,9 +37,11 @@ public interface ProductCompositeService {
     )
     @PostMapping(
         value = "/product-composite",
-        consumes = MediaType.APPLICATION_JSON_VALUE
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE
     )
-    void createCompositeProduct(@RequestBody ProductAggregate body);
+    Mono<WriteReceipt> createCompositeProduct(@RequestBody ProductAggregate body,
+        @RequestParam(value = "confirm", required = false, defaultValue = "false") boolean confirm);
 
     /**
      * Sample usage: curl $HOST:$PORT/product-composite/1
@@ -51,6 +63,62 @@ public interface ProductCompositeService {
         produces = "application/json")
     Mono<ProductAggregate> getCompositeProduct(@PathVariable int productId);
 
+    /**
+     * Sample usage: curl $HOST:$PORT/product-composite?ids=1,2,3
+     *
+     * @param productIds
+     * @return the composite product info for the product ids that were found, in requested order
+     */
+    @ApiOperation(
+        value = "${api.product-composite.get-composite-products.description}",
+        notes = "${api.product-composite.get-composite-products.notes}"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 400, message = "Bad Request, invalid format of the request. See response message for more information."),
+        @ApiResponse(code = 422, message = "Unprocessable entity, input parameters caused the processing to fails. See response message for more information.")
+    })
+    @GetMapping(
+        value = "/product-composite",
+        params = "ids",
+        produces = "application/json")
+    Flux<ProductAggregate> getCompositeProducts(@RequestParam(value = "ids", required = true) List<Integer> productIds);
+
+    /**
+     * Sample usage: curl -H "Accept: application/x-ndjson" $HOST:$PORT/product-composite/1/recommendations
+     *
+     * @param productId
+     * @return the recommendations of the product, streamed as they arrive from the recommendation service
+     */
+    @ApiOperation(
+        value = "${api.product-composite.get-composite-product-recommendations.description}",
+        notes = "${api.product-composite.get-composite-product-recommendations.notes}"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 400, message = "Bad Request, invalid format of the request. See response message for more information.")
+    })
+    @GetMapping(
+        value = "/product-composite/{productId}/recommendations",
+        produces = {"application/json", "application/x-ndjson", "text/event-stream"})
+    Flux<RecommendationSummary> getCompositeProductRecommendations(@PathVariable int productId);
+
+    /**
+     * Sample usage: curl -H "Accept: application/x-ndjson" $HOST:$PORT/product-composite/1/reviews
+     *
+     * @param productId
+     * @return the reviews of the product, streamed as they arrive from the review service
+     */
+    @ApiOperation(
+        value = "${api.product-composite.get-composite-product-reviews.description}",
+        notes = "${api.product-composite.get-composite-product-reviews.notes}"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(code = 400, message = "Bad Request, invalid format of the request. See response message for more information.")
+    })
+    @GetMapping(
+        value = "/product-composite/{productId}/reviews",
+        produces = {"application/json", "application/x-ndjson", "text/event-stream"})
+    Flux<ReviewSummary> getCompositeProductReviews(@PathVariable int productId);
+
     @ApiOperation(
         value = "${api.product-composite.delete-composite-product.description}",
         notes = "${api.product-composite.delete-composite-product.notes}")
@@ -59,5 +127,5 @@ public interface ProductCompositeService {
         @ApiResponse(code = 422, message = "Unprocessable entity, input parameters caused the processing to fail. See response message for more information.")
     })
     @DeleteMapping(value = "/product-composite/{productId}")
-    void deleteCompositeProduct(@PathVariable int productId);
+    Mono<Void> deleteCompositeProduct(@PathVariable int productId);
 }
\ No newline at end of file
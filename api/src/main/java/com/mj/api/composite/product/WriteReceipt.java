@@ -0,0 +1,21 @@
+package com.mj.api.composite.product;
+
+import com.mj.api.event.EventReceipt;
+import java.util.List;
+import lombok.Getter;
+
+@Getter
+public class WriteReceipt {
+    private final int productId;
+    private final List<EventReceipt> events;
+
+    public WriteReceipt() {
+        productId = 0;
+        events = null;
+    }
+
+    public WriteReceipt(int productId, List<EventReceipt> events) {
+        this.productId = productId;
+        this.events = events;
+    }
+}
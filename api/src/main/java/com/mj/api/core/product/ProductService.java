@@ -1,11 +1,14 @@
 package com.mj.api.core.product;
 
+import java.util.List;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 public interface ProductService {
@@ -21,12 +24,40 @@ public interface ProductService {
         produces = "application/json")
     Mono<Product> getProduct(@PathVariable int productId);
 
+    /**
+     * Sample usage: curl $HOST:$PORT/product?productIds=1,2,3
+     *
+     * @param productIds
+     * @return the products found in ascending productId order, product ids that do not exist are skipped
+     */
+    @GetMapping(
+        value = "/product",
+        params = "productIds",
+        produces = "application/json")
+    Flux<Product> getProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
     @PostMapping(
         value = "/product",
         consumes = MediaType.APPLICATION_JSON_VALUE,
         produces = MediaType.APPLICATION_JSON_VALUE)
-    Product createProduct(@RequestBody Product body);
+    Mono<Product> createProduct(@RequestBody Product body);
+
+    /**
+     * Sample usage:
+     *
+     * curl -X POST $HOST:$PORT/product/batch \
+     *   -H "Content-Type: application/json" --data \
+     *   '[{"productId":1,"name":"a","weight":1},{"productId":2,"name":"b","weight":2}]'
+     *
+     * @param body
+     * @return the created products, inserted with one bulk insert
+     */
+    @PostMapping(
+        value = "/product/batch",
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE)
+    Flux<Product> createProducts(@RequestBody List<Product> body);
 
     @DeleteMapping(value = "/product/{productId}")
-    void deleteProduct(@PathVariable int productId);
+    Mono<Void> deleteProduct(@PathVariable int productId);
 }
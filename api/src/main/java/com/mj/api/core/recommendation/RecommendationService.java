@@ -8,20 +8,36 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface RecommendationService {
 
     /**
      * Sample usage: curl $HOST:$PORT/recommendation?productId=1
      *
+     * Streams one recommendation per line with -H "Accept: application/x-ndjson",
+     * or one per event with -H "Accept: text/event-stream".
+     *
      * @param productId
      * @return
      */
     @GetMapping(
         value    = "/recommendation",
-        produces = "application/json")
+        produces = {"application/json", "application/x-ndjson", "text/event-stream"})
     Flux<Recommendation> getRecommendations(@RequestParam(value = "productId", required = true) int productId);
 
+    /**
+     * Sample usage: curl $HOST:$PORT/recommendation?productIds=1,2,3
+     *
+     * @param productIds
+     * @return the recommendations of all products in ascending productId order
+     */
+    @GetMapping(
+        value    = "/recommendation",
+        params   = "productIds",
+        produces = {"application/json", "application/x-ndjson", "text/event-stream"})
+    Flux<Recommendation> getRecommendationsForProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
     /**
      * Sample usage:
      *
@@ -36,7 +52,24 @@ public interface RecommendationService {
         value    = "/recommendation",
         consumes = "application/json",
         produces = "application/json")
-    Recommendation createRecommendation(@RequestBody Recommendation body);
+    Mono<Recommendation> createRecommendation(@RequestBody Recommendation body);
+
+    /**
+     * Sample usage:
+     *
+     * curl -X POST $HOST:$PORT/recommendation/batch \
+     *   -H "Content-Type: application/json" --data \
+     *   '[{"productId":123,"recommendationId":1,"author":"me","rate":5,"content":"yada"},
+     *     {"productId":123,"recommendationId":2,"author":"me","rate":4,"content":"yada"}]'
+     *
+     * @param body
+     * @return the created recommendations, inserted with one bulk insert
+     */
+    @PostMapping(
+        value    = "/recommendation/batch",
+        consumes = "application/json",
+        produces = "application/json")
+    Flux<Recommendation> createRecommendations(@RequestBody List<Recommendation> body);
 
     /**
      * Sample usage:
@@ -46,5 +79,5 @@ public interface RecommendationService {
      * @param productId
      */
     @DeleteMapping(value = "/recommendation")
-    void deleteRecommendations(@RequestParam(value = "productId", required = true)  int productId);
+    Mono<Void> deleteRecommendations(@RequestParam(value = "productId", required = true)  int productId);
 }
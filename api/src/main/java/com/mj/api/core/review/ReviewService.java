@@ -8,20 +8,36 @@ import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface ReviewService {
 
     /**
      * Sample usage: curl $HOST:$PORT/review?productId=1
      *
+     * Streams one review per line with -H "Accept: application/x-ndjson",
+     * or one per event with -H "Accept: text/event-stream".
+     *
      * @param productId
      * @return
      */
     @GetMapping(
         value    = "/review",
-        produces = "application/json")
+        produces = {"application/json", "application/x-ndjson", "text/event-stream"})
     Flux<Review> getReviews(@RequestParam(value = "productId", required = true) int productId);
 
+    /**
+     * Sample usage: curl $HOST:$PORT/review?productIds=1,2,3
+     *
+     * @param productIds
+     * @return the reviews of all products in ascending productId order
+     */
+    @GetMapping(
+        value    = "/review",
+        params   = "productIds",
+        produces = {"application/json", "application/x-ndjson", "text/event-stream"})
+    Flux<Review> getReviewsForProducts(@RequestParam(value = "productIds", required = true) List<Integer> productIds);
+
     /**
      * Sample usage:
      *
@@ -36,7 +52,24 @@ public interface ReviewService {
         value    = "/review",
         consumes = "application/json",
         produces = "application/json")
-    Review createReview(@RequestBody Review body);
+    Mono<Review> createReview(@RequestBody Review body);
+
+    /**
+     * Sample usage:
+     *
+     * curl -X POST $HOST:$PORT/review/batch \
+     *   -H "Content-Type: application/json" --data \
+     *   '[{"productId":123,"reviewId":1,"author":"me","subject":"yada","content":"yada"},
+     *     {"productId":123,"reviewId":2,"author":"me","subject":"yada","content":"yada"}]'
+     *
+     * @param body
+     * @return the created reviews, inserted with one batch of statements
+     */
+    @PostMapping(
+        value    = "/review/batch",
+        consumes = "application/json",
+        produces = "application/json")
+    Flux<Review> createReviews(@RequestBody List<Review> body);
 
     /**
      * Sample usage:
@@ -46,5 +79,5 @@ public interface ReviewService {
      * @param productId
      */
     @DeleteMapping(value = "/review")
-    void deleteReviews(@RequestParam(value = "productId", required = true)  int productId);
+    Mono<Void> deleteReviews(@RequestParam(value = "productId", required = true)  int productId);
 }
\ No newline at end of file
@@ -1,29 +1,59 @@
 package com.mj.api.event;
 
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 import lombok.Getter;
 
 @Getter
 public class Event<K, T> {
 
-    public enum Type { CREATE, DELETE }
+    /**
+     * CREATE_BATCH events carry their entities in batch instead of data, so that a consumer
+     * can persist all of them with one bulk insert.
+     */
+    public enum Type { CREATE, CREATE_BATCH, DELETE }
 
+    /**
+     * Unique per event, so that a publisher can correlate broker acknowledgements with it.
+     */
+    private UUID eventId;
     private Event.Type eventType;
     private K key;
     private T data;
+    private List<T> batch;
     private Date eventCreatedAt;
 
     public Event() {
+        this.eventId = null;
         this.eventType = null;
         this.key = null;
         this.data = null;
+        this.batch = null;
         this.eventCreatedAt = null;
     }
 
     public Event(Type eventType, K key, T data) {
+        this.eventId = UUID.randomUUID();
         this.eventType = eventType;
         this.key = key;
         this.data = data;
+        this.batch = null;
         this.eventCreatedAt = new Date();
     }
+
+    Event(UUID eventId, Type eventType, K key, T data, List<T> batch, Date eventCreatedAt) {
+        this.eventId = eventId;
+        this.eventType = eventType;
+        this.key = key;
+        this.data = data;
+        this.batch = batch;
+        this.eventCreatedAt = eventCreatedAt;
+    }
+
+    public static <K, T> Event<K, T> createBatch(K key, List<T> batch) {
+        Event<K, T> event = new Event<>(Type.CREATE_BATCH, key, null);
+        event.batch = batch;
+        return event;
+    }
 }
@@ -0,0 +1,266 @@
+package com.mj.api.event;
+
+import com.mj.api.core.product.Product;
+import com.mj.api.core.recommendation.Recommendation;
+import com.mj.api.core.review.Review;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary wire format for events, used for bindings with content type application/x-mj-event.
+ *
+ * An event is written as a version byte, the event id as two fixed 64-bit longs, the event type, the key, the creation time in epoch
+ * millis, the data entity and the batch entities. Ints are zig-zag varints and strings are UTF-8
+ * with a varint length, so a typical event is a fraction of its JSON size and is read without
+ * reflection. Each entity starts with a tag byte for its type; keys must be Integers.
+ */
+public final class EventCodec {
+
+    public static final String CONTENT_TYPE = "application/x-mj-event";
+
+    private static final byte VERSION = 2;
+    private static final byte VERSION_WITHOUT_ID = 1;
+
+    private static final byte NULL = 0;
+    private static final byte PRODUCT = 1;
+    private static final byte RECOMMENDATION = 2;
+    private static final byte REVIEW = 3;
+
+    private static final Event.Type[] TYPES = Event.Type.values();
+
+    private EventCodec() {
+    }
+
+    public static byte[] encode(Event<?, ?> event) {
+        Writer out = new Writer(64);
+        out.writeByte(VERSION);
+        writeId(out, event.getEventId());
+        out.writeByte(event.getEventType() == null ? -1 : event.getEventType().ordinal());
+        writeKey(out, event.getKey());
+        out.writeLong(event.getEventCreatedAt() == null ? Long.MIN_VALUE : event.getEventCreatedAt().getTime());
+        writeEntity(out, event.getData());
+
+        List<?> batch = event.getBatch();
+        if (batch == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(batch.size());
+            for (Object entity : batch) {
+                writeEntity(out, entity);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static Event<Integer, Object> decode(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        byte version = in.readByte();
+        if (version != VERSION && version != VERSION_WITHOUT_ID) {
+            throw new IllegalArgumentException("Unsupported event format version: " + version);
+        }
+
+        UUID eventId = version == VERSION ? readId(in) : null;
+
+        int typeOrdinal = in.readByte();
+        Event.Type type = typeOrdinal < 0 ? null : TYPES[typeOrdinal];
+        Integer key = in.readByte() == NULL ? null : in.readInt();
+        long createdAt = in.readLong();
+        Object data = readEntity(in);
+
+        List<Object> batch = null;
+        int batchSize = in.readInt();
+        if (batchSize >= 0) {
+            batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(readEntity(in));
+            }
+        }
+
+        return new Event<>(eventId, type, key, data, batch, createdAt == Long.MIN_VALUE ? null : new Date(createdAt));
+    }
+
+    private static void writeId(Writer out, UUID eventId) {
+        if (eventId == null) {
+            out.writeByte(NULL);
+        } else {
+            out.writeByte(1);
+            out.writeFixedLong(eventId.getMostSignificantBits());
+            out.writeFixedLong(eventId.getLeastSignificantBits());
+        }
+    }
+
+    private static UUID readId(Reader in) {
+        return in.readByte() == NULL ? null : new UUID(in.readFixedLong(), in.readFixedLong());
+    }
+
+    private static void writeKey(Writer out, Object key) {
+        if (key == null) {
+            out.writeByte(NULL);
+        } else if (key instanceof Integer intKey) {
+            out.writeByte(1);
+            out.writeInt(intKey);
+        } else {
+            throw new IllegalArgumentException("Unsupported event key type: " + key.getClass().getName());
+        }
+    }
+
+    private static void writeEntity(Writer out, Object entity) {
+        if (entity == null) {
+            out.writeByte(NULL);
+
+        } else if (entity instanceof Product p) {
+            out.writeByte(PRODUCT);
+            out.writeInt(p.getProductId());
+            out.writeString(p.getName());
+            out.writeInt(p.getWeight());
+            out.writeString(p.getServiceAddress());
+
+        } else if (entity instanceof Recommendation r) {
+            out.writeByte(RECOMMENDATION);
+            out.writeInt(r.getProductId());
+            out.writeInt(r.getRecommendationId());
+            out.writeString(r.getAuthor());
+            out.writeInt(r.getRate());
+            out.writeString(r.getContent());
+            out.writeString(r.getServiceAddress());
+
+        } else if (entity instanceof Review r) {
+            out.writeByte(REVIEW);
+            out.writeInt(r.getProductId());
+            out.writeInt(r.getReviewId());
+            out.writeString(r.getAuthor());
+            out.writeString(r.getSubject());
+            out.writeString(r.getContent());
+            out.writeString(r.getServiceAddress());
+
+        } else {
+            throw new IllegalArgumentException("Unsupported event entity type: " + entity.getClass().getName());
+        }
+    }
+
+    private static Object readEntity(Reader in) {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case NULL -> null;
+            case PRODUCT -> new Product(in.readInt(), in.readString(), in.readInt(), in.readString());
+            case RECOMMENDATION -> new Recommendation(in.readInt(), in.readInt(), in.readString(), in.readInt(),
+                in.readString(), in.readString());
+            case REVIEW -> new Review(in.readInt(), in.readInt(), in.readString(), in.readString(), in.readString(),
+                in.readString());
+            default -> throw new IllegalArgumentException("Unknown event entity tag: " + tag);
+        };
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer;
+        private int position;
+
+        Writer(int initialCapacity) {
+            buffer = new byte[initialCapacity];
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeInt(int value) {
+            writeVarLong(((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+        }
+
+        void writeLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeFixedLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeInt(-1);
+                return;
+            }
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(utf8.length);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, buffer, position, utf8.length);
+            position += utf8.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void writeVarLong(long zigZag) {
+            ensureCapacity(10);
+            while ((zigZag & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((zigZag & 0x7F) | 0x80);
+                zigZag >>>= 7;
+            }
+            buffer[position++] = (byte) zigZag;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        int readInt() {
+            return (int) readLong();
+        }
+
+        long readLong() {
+            long zigZag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                zigZag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+
+        long readFixedLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        String readString() {
+            int length = readInt();
+            if (length < 0) {
+                return null;
+            }
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.mj.api.event;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounded memory of the ids of recently consumed events, used to drop redeliveries before they
+ * reach the repository.
+ *
+ * A Bloom filter of about ten bits per id answers the lookup of a new id without touching the
+ * LRU of the last capacity ids. Ids the filter may have seen are looked up in the LRU, so a false
+ * positive never drops an event, and an id that has left the LRU is let through to the duplicate
+ * key check of the repository. The filter is rotated in two generations of capacity ids so that
+ * it doesn't fill up.
+ */
+public class EventDeduplicator {
+
+    private static final int HASHES = 7;
+
+    private final int capacity;
+    private final int bits;
+    private final Map<UUID, Boolean> recent;
+    private long[] current;
+    private long[] previous;
+    private int currentCount;
+
+    public EventDeduplicator(int capacity) {
+        this.capacity = capacity;
+        this.bits = Math.max(64, capacity * 10);
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Boolean> eldest) {
+                return size() > EventDeduplicator.this.capacity;
+            }
+        };
+        this.current = new long[(bits + 63) / 64];
+        this.previous = new long[current.length];
+    }
+
+    /**
+     * Remembers the id and returns false if it was already seen within the window.
+     */
+    public synchronized boolean firstDelivery(UUID eventId) {
+        if (mightContain(current, eventId) || mightContain(previous, eventId)) {
+            if (recent.get(eventId) != null) {
+                return false;
+            }
+        }
+
+        if (currentCount == capacity) {
+            previous = current;
+            current = new long[previous.length];
+            currentCount = 0;
+        }
+        for (int i = 0; i < HASHES; i++) {
+            int bit = bit(eventId, i);
+            current[bit >>> 6] |= 1L << bit;
+        }
+        currentCount++;
+        recent.put(eventId, Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * Forgets the id of an event that could not be applied, so that a redelivery is processed.
+     */
+    public synchronized void forget(UUID eventId) {
+        recent.remove(eventId);
+    }
+
+    private boolean mightContain(long[] filter, UUID eventId) {
+        for (int i = 0; i < HASHES; i++) {
+            int bit = bit(eventId, i);
+            if ((filter[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Double hashing over the two random halves of the id.
+     */
+    private int bit(UUID eventId, int i) {
+        return (int) Math.floorMod(eventId.getMostSignificantBits() + i * eventId.getLeastSignificantBits(), (long) bits);
+    }
+}
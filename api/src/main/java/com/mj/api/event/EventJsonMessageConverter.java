@@ -0,0 +1,83 @@
+package com.mj.api.event;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.ResolvableType;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Reads JSON events with the key and entity types of the EventStreamProcessor of the service.
+ *
+ * Spring Cloud Function drops the generic type of a Message<Event<K, T>> input before it asks the
+ * converters, so the JSON converter of the binder would read the data and batch of an event as
+ * maps. Services without a processor, and writing, are left to the binder's converter.
+ */
+@Component
+public class EventJsonMessageConverter extends AbstractMessageConverter {
+
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<EventStreamProcessor<?, ?>> processor;
+    private volatile JavaType eventType;
+
+    public EventJsonMessageConverter(ObjectMapper objectMapper, ObjectProvider<EventStreamProcessor<?, ?>> processor) {
+        super(MimeTypeUtils.APPLICATION_JSON);
+        this.objectMapper = objectMapper;
+        this.processor = processor;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Event.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canConvertFrom(Message<?> message, @Nullable Class<?> targetClass) {
+        return message.getPayload() instanceof byte[] && super.canConvertFrom(message, targetClass)
+            && getEventType() != null;
+    }
+
+    @Override
+    protected boolean canConvertTo(Object payload, @Nullable MessageHeaders headers) {
+        return false;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, @Nullable Object conversionHint) {
+        JavaType type = conversionHint instanceof Type hint && hint != targetClass
+            ? objectMapper.constructType(hint)
+            : getEventType();
+        try {
+            return objectMapper.readValue((byte[]) message.getPayload(), type);
+        } catch (IOException e) {
+            throw new MessageConversionException(message, "Could not read JSON event: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resolved on first use, the processor depends on the binder that depends on the converters.
+     */
+    private JavaType getEventType() {
+        if (eventType == null) {
+            EventStreamProcessor<?, ?> eventProcessor = processor.getIfUnique();
+            if (eventProcessor == null) {
+                return null;
+            }
+            ResolvableType type = ResolvableType.forClass(ClassUtils.getUserClass(eventProcessor))
+                .as(EventStreamProcessor.class);
+            eventType = objectMapper.getTypeFactory().constructParametricType(Event.class,
+                objectMapper.constructType(type.getGeneric(0).getType()),
+                objectMapper.constructType(type.getGeneric(1).getType()));
+        }
+        return eventType;
+    }
+}
@@ -0,0 +1,41 @@
+package com.mj.api.event;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+/**
+ * Converts events to and from the EventCodec wire format for bindings and messages with content
+ * type application/x-mj-event. Messages with any other content type keep using the JSON converter.
+ */
+@Component
+public class EventMessageConverter extends AbstractMessageConverter {
+
+    public EventMessageConverter() {
+        super(MimeType.valueOf(EventCodec.CONTENT_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Event.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canConvertFrom(Message<?> message, @Nullable Class<?> targetClass) {
+        return message.getPayload() instanceof byte[] && super.canConvertFrom(message, targetClass);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, @Nullable Object conversionHint) {
+        return EventCodec.decode((byte[]) message.getPayload());
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, @Nullable MessageHeaders headers,
+        @Nullable Object conversionHint) {
+        return EventCodec.encode((Event<?, ?>) payload);
+    }
+}
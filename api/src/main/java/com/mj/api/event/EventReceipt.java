@@ -0,0 +1,49 @@
+package com.mj.api.event;
+
+import java.util.UUID;
+import lombok.Getter;
+
+/**
+ * Outcome of publishing one event. Partition and offset are only known when the binder reports
+ * them, i.e. for confirmed Kafka sends.
+ */
+@Getter
+public class EventReceipt {
+
+    /**
+     * STORED events were written to the outbox of the publisher and are relayed later, SENT
+     * events were handed to the binder, CONFIRMED events were acknowledged by the broker and
+     * FAILED events were nacked, returned or not acknowledged in time.
+     */
+    public enum Status { STORED, SENT, CONFIRMED, FAILED }
+
+    private final UUID eventId;
+    private final Event.Type eventType;
+    private final String binding;
+    private final Status status;
+    private final Integer partition;
+    private final Long offset;
+
+    public EventReceipt() {
+        this.eventId = null;
+        this.eventType = null;
+        this.binding = null;
+        this.status = null;
+        this.partition = null;
+        this.offset = null;
+    }
+
+    public EventReceipt(UUID eventId, Event.Type eventType, String binding, Status status,
+        Integer partition, Long offset) {
+        this.eventId = eventId;
+        this.eventType = eventType;
+        this.binding = binding;
+        this.status = status;
+        this.partition = partition;
+        this.offset = offset;
+    }
+
+    public static EventReceipt of(Event<?, ?> event, String binding, Status status) {
+        return new EventReceipt(event.getEventId(), event.getEventType(), binding, status, null, null);
+    }
+}
@@ -0,0 +1,179 @@
+package com.mj.api.event;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Applies a stream of event messages consumed from a binding.
+ *
+ * Events are spread over concurrency lanes by the hash of their key. Each lane applies its events
+ * one at a time, or, with a batch max size above one, in batches of the events that arrive within
+ * batch max wait, so events for the same key are always applied in the order they were consumed
+ * while events for different keys are applied in parallel.
+ *
+ * A batch is split into runs of consecutive events of the same kind, so that the order of
+ * creates and deletes is kept. The entities of a run of CREATE and CREATE_BATCH events are
+ * written with one bulk insert, all other runs are applied one event at a time. If a bulk insert
+ * fails the run is applied again one event at a time. Every event that still fails after
+ * maxAttempts is handed to deadLetter and the stream goes on.
+ *
+ * With a dedup capacity above zero, events whose id was consumed within the last dedup capacity
+ * events are dropped before they are applied, see EventDeduplicator.
+ *
+ * Each event, and each bulk insert, is applied within observe, which is given the headers of the
+ * messages it applies, from the first attempt until it succeeded or was dead-lettered.
+ */
+@Slf4j
+public abstract class EventStreamProcessor<K, T> {
+
+    private final int concurrency;
+    private final int maxAttempts;
+    private final Duration backOffInitialInterval;
+    private final int batchMaxSize;
+    private final Duration batchMaxWait;
+    private final EventDeduplicator deduplicator;
+
+    protected EventStreamProcessor(int concurrency, int maxAttempts, Duration backOffInitialInterval,
+        int batchMaxSize, Duration batchMaxWait, int dedupCapacity) {
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.backOffInitialInterval = backOffInitialInterval;
+        this.batchMaxSize = batchMaxSize;
+        this.batchMaxWait = batchMaxWait;
+        this.deduplicator = dedupCapacity > 0 ? new EventDeduplicator(dedupCapacity) : null;
+    }
+
+    protected abstract Mono<Void> createAll(List<T> entities);
+
+    protected abstract Mono<Void> processEvent(Event<K, T> event);
+
+    protected abstract void deadLetter(Event<K, T> event, Throwable error);
+
+    /**
+     * @param operation the event type, or BULK for a bulk insert
+     */
+    protected Mono<Void> observe(String operation, List<MessageHeaders> headers, Mono<Void> processing) {
+        return processing;
+    }
+
+    public Mono<Void> process(Flux<Message<Event<K, T>>> messages) {
+        if (deduplicator != null) {
+            messages = messages.filter(this::firstDelivery);
+        }
+
+        if (concurrency == 1) {
+            return processLane(messages);
+        }
+
+        return messages
+            .groupBy(this::laneOf)
+            .flatMap(this::processLane, concurrency)
+            .then();
+    }
+
+    private Mono<Void> processLane(Flux<Message<Event<K, T>>> lane) {
+        if (batchMaxSize > 1) {
+            return lane
+                .bufferTimeout(batchMaxSize, batchMaxWait)
+                .concatMap(this::processBatch)
+                .then();
+        }
+
+        return lane
+            .concatMap(this::processWithRetry)
+            .then();
+    }
+
+    private boolean firstDelivery(Message<Event<K, T>> message) {
+        Event<K, T> event = message.getPayload();
+        if (event.getEventId() == null || deduplicator.firstDelivery(event.getEventId())) {
+            return true;
+        }
+        log.info("Drops redelivered event {} for key {}, id: {}", event.getEventType(), event.getKey(),
+            event.getEventId());
+        return false;
+    }
+
+    private int laneOf(Message<Event<K, T>> message) {
+        Event<K, T> event = message.getPayload();
+        return event.getKey() == null ? 0 : Math.floorMod(event.getKey().hashCode(), concurrency);
+    }
+
+    public Mono<Void> processBatch(List<Message<Event<K, T>>> messages) {
+        log.info("Process a batch of {} messages...", messages.size());
+
+        return Flux.fromIterable(splitIntoRuns(messages))
+            .concatMap(run -> isCreate(run.get(0)) && run.size() > 1 ? createRun(run) : processEach(run))
+            .then()
+            .doOnSuccess(v -> log.info("Batch processing done!"));
+    }
+
+    private Mono<Void> createRun(List<Message<Event<K, T>>> run) {
+        List<T> entities = new ArrayList<>();
+        List<MessageHeaders> headers = new ArrayList<>(run.size());
+        run.forEach(message -> {
+            Event<K, T> event = message.getPayload();
+            if (event.getEventType() == Event.Type.CREATE_BATCH) {
+                entities.addAll(event.getBatch());
+            } else {
+                entities.add(event.getData());
+            }
+            headers.add(message.getHeaders());
+        });
+
+        return observe("BULK", headers, Mono.defer(() -> createAll(entities)))
+            .onErrorResume(error -> {
+                log.warn("Bulk insert of {} entities failed, applies the {} events one by one: {}",
+                    entities.size(), run.size(), error.toString());
+                return processEach(run);
+            });
+    }
+
+    private Mono<Void> processEach(List<Message<Event<K, T>>> run) {
+        return Flux.fromIterable(run)
+            .concatMap(this::processWithRetry)
+            .then();
+    }
+
+    private Mono<Void> processWithRetry(Message<Event<K, T>> message) {
+        Event<K, T> event = message.getPayload();
+        Mono<Void> processing = Mono.defer(() -> processEvent(event))
+            .retryWhen(Retry.backoff(maxAttempts - 1L, backOffInitialInterval)
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+            .onErrorResume(error -> {
+                log.warn("Event {} for key {} failed, sends it to the dead letter destination: {}",
+                    event.getEventType(), event.getKey(), error.toString());
+                if (deduplicator != null && event.getEventId() != null) {
+                    deduplicator.forget(event.getEventId());
+                }
+                deadLetter(event, error);
+                return Mono.empty();
+            });
+        return observe(String.valueOf(event.getEventType()), List.of(message.getHeaders()), processing);
+    }
+
+    private List<List<Message<Event<K, T>>>> splitIntoRuns(List<Message<Event<K, T>>> messages) {
+        List<List<Message<Event<K, T>>>> runs = new ArrayList<>();
+        List<Message<Event<K, T>>> run = null;
+        for (Message<Event<K, T>> message : messages) {
+            if (run == null || isCreate(run.get(0)) != isCreate(message)) {
+                run = new ArrayList<>();
+                runs.add(run);
+            }
+            run.add(message);
+        }
+        return runs;
+    }
+
+    private static boolean isCreate(Message<? extends Event<?, ?>> message) {
+        Event.Type type = message.getPayload().getEventType();
+        return type == Event.Type.CREATE || type == Event.Type.CREATE_BATCH;
+    }
+}
@@ -0,0 +1,57 @@
+package com.mj.api.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mj.api.core.product.Product;
+import com.mj.api.core.recommendation.Recommendation;
+import com.mj.api.core.review.Review;
+import com.mj.api.event.Event.Type;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class EventCodecTest {
+
+    private static ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void roundTripCreateEvent() {
+        Event<Integer, Product> event = new Event<>(Type.CREATE, 1, new Product(1, "name åäö", -5, null));
+
+        Event<Integer, Object> result = EventCodec.decode(EventCodec.encode(event));
+
+        assertThat(result.getEventId()).isEqualTo(event.getEventId());
+        assertThat(result.getEventType()).isEqualTo(Type.CREATE);
+        assertThat(result.getKey()).isEqualTo(1);
+        assertThat(result.getEventCreatedAt()).isEqualTo(event.getEventCreatedAt());
+        assertThat(result.getData()).usingRecursiveComparison().isEqualTo(event.getData());
+        assertThat(result.getBatch()).isNull();
+    }
+
+    @Test
+    void roundTripBatchAndDeleteEvents() {
+        Event<Integer, Review> batch = Event.createBatch(Integer.MAX_VALUE, List.of(
+            new Review(Integer.MAX_VALUE, 1, "a", "s", "c", null),
+            new Review(Integer.MAX_VALUE, Integer.MIN_VALUE, null, "s", "c".repeat(70_000), "sa")));
+        Event<Integer, Recommendation> delete = new Event<>(Type.DELETE, 3, null);
+
+        Event<Integer, Object> batchResult = EventCodec.decode(EventCodec.encode(batch));
+        Event<Integer, Object> deleteResult = EventCodec.decode(EventCodec.encode(delete));
+
+        assertThat(batchResult.getEventType()).isEqualTo(Type.CREATE_BATCH);
+        assertThat(batchResult.getData()).isNull();
+        assertThat(batchResult.getBatch()).usingRecursiveFieldByFieldElementComparator().isEqualTo(batch.getBatch());
+        assertThat(deleteResult.getEventType()).isEqualTo(Type.DELETE);
+        assertThat(deleteResult.getKey()).isEqualTo(3);
+        assertThat(deleteResult.getData()).isNull();
+    }
+
+    @Test
+    void smallerThanJson() throws JsonProcessingException {
+        Event<Integer, Recommendation> event = new Event<>(Type.CREATE, 1,
+            new Recommendation(1, 1, "author", 5, "content", null));
+
+        assertThat(EventCodec.encode(event).length).isLessThan(mapper.writeValueAsBytes(event).length / 3);
+    }
+}
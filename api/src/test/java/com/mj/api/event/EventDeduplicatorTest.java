@@ -0,0 +1,37 @@
+package com.mj.api.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class EventDeduplicatorTest {
+
+    @Test
+    void dropsRedeliveryUntilForgotten() {
+        EventDeduplicator deduplicator = new EventDeduplicator(100);
+        UUID eventId = UUID.randomUUID();
+
+        assertThat(deduplicator.firstDelivery(eventId)).isTrue();
+        assertThat(deduplicator.firstDelivery(eventId)).isFalse();
+
+        deduplicator.forget(eventId);
+        assertThat(deduplicator.firstDelivery(eventId)).isTrue();
+    }
+
+    @Test
+    void letsThroughEverythingOutsideTheWindow() {
+        EventDeduplicator deduplicator = new EventDeduplicator(100);
+        List<UUID> eventIds = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            eventIds.add(UUID.randomUUID());
+        }
+
+        // Bloom filter false positives must never drop a new id
+        assertThat(eventIds).allMatch(deduplicator::firstDelivery);
+        assertThat(deduplicator.firstDelivery(eventIds.get(0))).isTrue();
+        assertThat(deduplicator.firstDelivery(eventIds.get(9_999))).isFalse();
+    }
+}
@@ -0,0 +1,85 @@
+package com.mj.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mj.api.core.review.Review;
+import com.mj.api.event.Event;
+import com.mj.api.event.Event.Type;
+import com.mj.api.event.EventCodec;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the JSON wire format of the bindings with EventCodec, for a single CREATE event and for
+ * CREATE_BATCH events of batchSize reviews. The encoded size of both formats is printed at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class EventSerializationBenchmark {
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private JavaType eventType;
+
+    private Event<Integer, Review> event;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        eventType = mapper.getTypeFactory().constructParametricType(Event.class, Integer.class, Review.class);
+
+        if (batchSize == 1) {
+            event = new Event<>(Type.CREATE, 1, review(1));
+        } else {
+            List<Review> reviews = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                reviews.add(review(i));
+            }
+            event = Event.createBatch(1, reviews);
+        }
+
+        json = mapper.writeValueAsBytes(event);
+        binary = EventCodec.encode(event);
+        System.out.printf("Encoded size, batchSize: %d, json: %d bytes, binary: %d bytes%n",
+            batchSize, json.length, binary.length);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        return mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public Event<Integer, Review> jsonDecode() throws IOException {
+        return mapper.readValue(json, eventType);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return EventCodec.encode(event);
+    }
+
+    @Benchmark
+    public Event<Integer, Object> binaryDecode() {
+        return EventCodec.decode(binary);
+    }
+
+    private static Review review(int reviewId) {
+        return new Review(1, reviewId, "Author " + reviewId, "Subject " + reviewId,
+            "Content of review " + reviewId + ", which is a bit longer than the other fields", null);
+    }
+}
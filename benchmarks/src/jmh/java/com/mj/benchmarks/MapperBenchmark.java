@@ -0,0 +1,102 @@
+package com.mj.benchmarks;
+
+import com.mj.api.core.product.Product;
+import com.mj.api.core.recommendation.Recommendation;
+import com.mj.api.core.review.Review;
+import com.mj.microservices.core.product.persistence.ProductEntity;
+import com.mj.microservices.core.product.services.ProductMapper;
+import com.mj.microservices.core.recommendation.persistence.RecommendationEntity;
+import com.mj.microservices.core.recommendation.services.RecommendationMapper;
+import com.mj.microservices.core.review.persistence.ReviewR2dbcEntity;
+import com.mj.microservices.core.review.services.ReviewMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The MapStruct mappers of the core services, for one product and for lists of size
+ * recommendations and reviews, in both directions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    @Param({"1", "100"})
+    private int size;
+
+    private final ProductMapper productMapper = Mappers.getMapper(ProductMapper.class);
+    private final RecommendationMapper recommendationMapper = Mappers.getMapper(RecommendationMapper.class);
+    private final ReviewMapper reviewMapper = Mappers.getMapper(ReviewMapper.class);
+
+    private ProductEntity productEntity;
+    private Product product;
+    private List<RecommendationEntity> recommendationEntities;
+    private List<Recommendation> recommendations;
+    private List<ReviewR2dbcEntity> reviewEntities;
+    private List<Review> reviews;
+
+    @Setup
+    public void setup() {
+        productEntity = new ProductEntity(1, "Product 1", 100);
+        product = productMapper.entityToApi(productEntity);
+        recommendationEntities = new ArrayList<>(size);
+        reviewEntities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            recommendationEntities.add(new RecommendationEntity(1, i, "Author " + i, i % 5, "Content " + i));
+            reviewEntities.add(new ReviewR2dbcEntity(1, i, "Author " + i, "Subject " + i, "Content " + i));
+        }
+        recommendations = recommendationMapper.entityListToApiList(recommendationEntities);
+        reviews = new ArrayList<>(size);
+        for (ReviewR2dbcEntity entity : reviewEntities) {
+            reviews.add(reviewMapper.r2dbcEntityToApi(entity));
+        }
+    }
+
+    @Benchmark
+    public Product productEntityToApi() {
+        return productMapper.entityToApi(productEntity);
+    }
+
+    @Benchmark
+    public ProductEntity productApiToEntity() {
+        return productMapper.apiToEntity(product);
+    }
+
+    @Benchmark
+    public List<Recommendation> recommendationEntitiesToApi() {
+        return recommendationMapper.entityListToApiList(recommendationEntities);
+    }
+
+    @Benchmark
+    public List<RecommendationEntity> recommendationApiToEntities() {
+        return recommendationMapper.apiListToEntityList(recommendations);
+    }
+
+    @Benchmark
+    public List<Review> reviewEntitiesToApi() {
+        List<Review> mapped = new ArrayList<>(reviewEntities.size());
+        for (ReviewR2dbcEntity entity : reviewEntities) {
+            mapped.add(reviewMapper.r2dbcEntityToApi(entity));
+        }
+        return mapped;
+    }
+
+    @Benchmark
+    public List<ReviewR2dbcEntity> reviewApiToEntities() {
+        List<ReviewR2dbcEntity> mapped = new ArrayList<>(reviews.size());
+        for (Review review : reviews) {
+            mapped.add(reviewMapper.apiToR2dbcEntity(review));
+        }
+        return mapped;
+    }
+}
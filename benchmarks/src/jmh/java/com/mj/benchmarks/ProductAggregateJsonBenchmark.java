@@ -0,0 +1,86 @@
+package com.mj.benchmarks;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mj.api.composite.product.ProductAggregate;
+import com.mj.api.composite.product.RecommendationSummary;
+import com.mj.api.composite.product.ReviewSummary;
+import com.mj.api.composite.product.ServiceAddresses;
+import com.mj.api.core.product.Product;
+import com.mj.api.event.Event;
+import com.mj.api.event.Event.Type;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Jackson (de)serialization of a ProductAggregate with size recommendations and reviews, as
+ * returned by the composite, and of the product CREATE event it publishes. The event with review
+ * batches is compared with EventCodec in EventSerializationBenchmark. The ObjectMapper is built
+ * like the one of Spring Boot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ProductAggregateJsonBenchmark {
+
+    @Param({"0", "10", "100"})
+    private int size;
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    private JavaType eventType;
+
+    private ProductAggregate aggregate;
+    private byte[] aggregateJson;
+    private Event<Integer, Product> event;
+    private byte[] eventJson;
+
+    @Setup
+    public void setup() throws IOException {
+        eventType = mapper.getTypeFactory().constructParametricType(Event.class, Integer.class, Product.class);
+
+        List<RecommendationSummary> recommendations = new ArrayList<>(size);
+        List<ReviewSummary> reviews = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            recommendations.add(new RecommendationSummary(i, "Author " + i, i % 5, "Content " + i));
+            reviews.add(new ReviewSummary(i, "Author " + i, "Subject " + i, "Content " + i));
+        }
+        aggregate = new ProductAggregate(1, "Product 1", 100, recommendations, reviews,
+            new ServiceAddresses("product-composite/10.0.0.4:8080", "product-1/10.0.0.1:8080",
+                "review-1/10.0.0.3:8080", "recommendation-1/10.0.0.2:8080"));
+        aggregateJson = mapper.writeValueAsBytes(aggregate);
+
+        event = new Event<>(Type.CREATE, 1, new Product(1, "Product 1", 100, null));
+        eventJson = mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public byte[] aggregateSerialize() throws IOException {
+        return mapper.writeValueAsBytes(aggregate);
+    }
+
+    @Benchmark
+    public ProductAggregate aggregateDeserialize() throws IOException {
+        return mapper.readValue(aggregateJson, ProductAggregate.class);
+    }
+
+    @Benchmark
+    public byte[] eventSerialize() throws IOException {
+        return mapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public Event<Integer, Product> eventDeserialize() throws IOException {
+        return mapper.readValue(eventJson, eventType);
+    }
+}
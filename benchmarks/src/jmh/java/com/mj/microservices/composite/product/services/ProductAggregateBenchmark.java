@@ -0,0 +1,128 @@
+package com.mj.microservices.composite.product.services;
+
+import com.mj.api.composite.product.ProductAggregate;
+import com.mj.api.composite.product.RecommendationSummary;
+import com.mj.api.composite.product.ReviewSummary;
+import com.mj.api.composite.product.ServiceAddresses;
+import com.mj.api.core.product.Product;
+import com.mj.api.core.recommendation.Recommendation;
+import com.mj.api.core.review.Review;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Assembly of a ProductAggregate from a product and size recommendations and reviews, as done for
+ * every getCompositeProduct call that misses the cache, and of the aggregates of a batch of ten
+ * products. Lives in the package of ProductAggregateAssembler, which is package-private.
+ *
+ * createProductAggregateWithStreams is the earlier stream based assembly, kept as a reference.
+ * Run with -prof gc to compare the allocated bytes per operation, gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ProductAggregateBenchmark {
+
+    private static final String SERVICE_ADDRESS = "product-composite/10.0.0.4:8080";
+    private static final int BATCH_SIZE = 10;
+
+    @Param({"0", "10", "100"})
+    private int size;
+
+    private Product product;
+    private List<Recommendation> recommendations;
+    private List<Review> reviews;
+
+    private List<Product> products;
+    private Map<Integer, Collection<Recommendation>> recommendationsByProduct;
+    private Map<Integer, Collection<Review>> reviewsByProduct;
+
+    @Setup
+    public void setup() {
+        product = new Product(1, "Product 1", 100, "product-1/10.0.0.1:8080");
+        recommendations = recommendations(1);
+        reviews = reviews(1);
+
+        products = new ArrayList<>(BATCH_SIZE);
+        recommendationsByProduct = new HashMap<>();
+        reviewsByProduct = new HashMap<>();
+        for (int productId = 1; productId <= BATCH_SIZE; productId++) {
+            products.add(new Product(productId, "Product " + productId, 100, "product-1/10.0.0.1:8080"));
+            recommendationsByProduct.put(productId, recommendations(productId));
+            reviewsByProduct.put(productId, reviews(productId));
+        }
+    }
+
+    @Benchmark
+    public ProductAggregate createProductAggregate() {
+        return ProductAggregateAssembler.createProductAggregate(product, recommendations, reviews, SERVICE_ADDRESS);
+    }
+
+    @Benchmark
+    public ProductAggregate createProductAggregateWithStreams() {
+        return createWithStreams(product, recommendations, reviews, SERVICE_ADDRESS);
+    }
+
+    @Benchmark
+    public Map<Integer, ProductAggregate> createProductAggregates() {
+        return ProductAggregateAssembler.createProductAggregates(products, recommendationsByProduct,
+            reviewsByProduct, SERVICE_ADDRESS);
+    }
+
+    private List<Recommendation> recommendations(int productId) {
+        List<Recommendation> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Recommendation(productId, i, "Author " + i, i % 5, "Content " + i,
+                "recommendation-1/10.0.0.2:8080"));
+        }
+        return list;
+    }
+
+    private List<Review> reviews(int productId) {
+        List<Review> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(new Review(productId, i, "Author " + i, "Subject " + i, "Content " + i, "review-1/10.0.0.3:8080"));
+        }
+        return list;
+    }
+
+    private static ProductAggregate createWithStreams(Product product,
+        List<Recommendation> recommendations, List<Review> reviews, String serviceAddress) {
+
+        List<RecommendationSummary> recommendationSummaries = (recommendations == null) ? null :
+            recommendations.stream()
+                .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(),
+                    r.getRate(), r.getContent()))
+                .collect(Collectors.toList());
+
+        List<ReviewSummary> reviewSummaries = (reviews == null) ? null :
+            reviews.stream()
+                .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()))
+                .collect(Collectors.toList());
+
+        String productAddress = product.getServiceAddress();
+        String reviewAddress =
+            (reviews != null && reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
+        String recommendationAddress =
+            (recommendations != null && recommendations.size() > 0) ? recommendations.get(0)
+                .getServiceAddress() : "";
+        ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, productAddress,
+            reviewAddress, recommendationAddress);
+
+        return new ProductAggregate(product.getProductId(), product.getName(), product.getWeight(),
+            recommendationSummaries, reviewSummaries, serviceAddresses);
+    }
+}
@@ -0,0 +1,56 @@
+package com.mj.util.http;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mj.util.exceptions.NotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+/**
+ * Cost of an error response: creating the exception with its stack trace, handling it in the
+ * GlobalControllerExceptionHandler and writing the HttpErrorInfo as JSON. Lives in the package of
+ * the handler, which is package-private. Logging is turned off in the benchmark logback.xml, so
+ * the log line of the handler is not part of the numbers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class ErrorPathBenchmark {
+
+    private final GlobalControllerExceptionHandler handler = new GlobalControllerExceptionHandler();
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private MockServerHttpRequest request;
+    private NotFoundException exception;
+
+    @Setup
+    public void setup() {
+        request = MockServerHttpRequest.get("/product-composite/13").build();
+        exception = new NotFoundException("No product found for productId: 13");
+    }
+
+    @Benchmark
+    public NotFoundException createException() {
+        return new NotFoundException("No product found for productId: 13");
+    }
+
+    @Benchmark
+    public HttpErrorInfo handle() {
+        return handler.handleNotFoundExceptions(request, exception);
+    }
+
+    @Benchmark
+    public byte[] createHandleAndWrite() throws IOException {
+        HttpErrorInfo errorInfo = handler.handleNotFoundExceptions(request,
+            new NotFoundException("No product found for productId: 13"));
+        return mapper.writeValueAsBytes(errorInfo);
+    }
+}
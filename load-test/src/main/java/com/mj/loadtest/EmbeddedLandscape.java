@@ -0,0 +1,169 @@
+package com.mj.loadtest;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The four services in one JVM, each in its own ServiceNode, with embedded MongoDB for product and
+ * recommendation, H2 for review and the test binder in place of the broker.
+ *
+ * The test binder of a service only reaches that service, so a bridge thread per destination
+ * moves the events the composite publishes to the core service consuming them, like the broker
+ * would. The core services are started first on random ports and the composite finds them
+ * through the simple discovery client instead of Eureka.
+ */
+class EmbeddedLandscape implements AutoCloseable {
+
+    static final String PRODUCT = "product";
+    static final String RECOMMENDATION = "recommendation";
+    static final String REVIEW = "review";
+    static final String PRODUCT_COMPOSITE = "product-composite";
+
+    private static final Map<String, String> MAIN_CLASSES = Map.of(
+        PRODUCT, "com.mj.microservices.core.product.ProductServiceApplication",
+        RECOMMENDATION, "com.mj.microservices.core.recommendation.RecommendationServiceApplication",
+        REVIEW, "com.mj.microservices.core.review.ReviewServiceApplication",
+        PRODUCT_COMPOSITE, "com.mj.microservices.composite.product.ProductCompositeServiceApplication");
+
+    private static final Map<String, String> DESTINATIONS = Map.of(
+        PRODUCT, "products",
+        RECOMMENDATION, "recommendations",
+        REVIEW, "reviews");
+
+    private final Map<String, ServiceNode> nodes = new LinkedHashMap<>();
+    private final List<Thread> bridges = new ArrayList<>();
+    private final AtomicLong bridged = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * @param classpaths the runtime classpath of each service, with the test binder and the embedded database
+     * @param overrides  additional properties of each service, as --name=value arguments
+     */
+    static EmbeddedLandscape start(Map<String, String> classpaths, Map<String, List<String>> overrides, PrintStream out) {
+        EmbeddedLandscape landscape = new EmbeddedLandscape();
+        try {
+            for (String service : List.of(PRODUCT, RECOMMENDATION, REVIEW)) {
+                landscape.startNode(service, classpaths, coreArgs(service), overrides, out);
+            }
+
+            List<String> compositeArgs = new ArrayList<>(commonArgs());
+            compositeArgs.add("--app.product-composite.publish.confirm-mode=none");
+            for (String service : DESTINATIONS.keySet()) {
+                compositeArgs.add("--spring.cloud.discovery.client.simple.instances." + service + "[0].uri="
+                    + landscape.getUri(service));
+            }
+            ServiceNode composite = landscape.startNode(PRODUCT_COMPOSITE, classpaths, compositeArgs, overrides, out);
+
+            DESTINATIONS.forEach((service, destination) ->
+                landscape.bridge(composite, landscape.nodes.get(service), destination));
+            return landscape;
+        } catch (RuntimeException e) {
+            landscape.close();
+            throw e;
+        }
+    }
+
+    URI getUri(String service) {
+        return URI.create("http://localhost:" + nodes.get(service).getPort());
+    }
+
+    long getBridgedCount() {
+        return bridged.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Thread bridge : bridges) {
+            try {
+                bridge.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<ServiceNode> reversed = new ArrayList<>(nodes.values());
+        Collections.reverse(reversed);
+        for (ServiceNode node : reversed) {
+            try {
+                node.close();
+            } catch (Exception e) {
+                System.err.println("Failed to stop " + node.getName() + ": " + e);
+            }
+        }
+    }
+
+    private ServiceNode startNode(String service, Map<String, String> classpaths, List<String> args,
+        Map<String, List<String>> overrides, PrintStream out) {
+
+        String classpath = classpaths.get(service);
+        if (classpath == null) {
+            throw new IllegalArgumentException("No classpath for " + service + ", see the run task of load-test");
+        }
+        List<String> allArgs = new ArrayList<>(args);
+        allArgs.addAll(overrides.getOrDefault(service, List.of()));
+
+        long start = System.nanoTime();
+        ServiceNode node = ServiceNode.start(service, classpath, MAIN_CLASSES.get(service), allArgs);
+        nodes.put(service, node);
+        out.printf("Started %s on port %d in %d ms%n", service, node.getPort(), (System.nanoTime() - start) / 1_000_000);
+        return node;
+    }
+
+    private void bridge(ServiceNode from, ServiceNode to, String destination) {
+        Thread bridge = new Thread(() -> {
+            while (running) {
+                try {
+                    for (Object[] message : from.receive(destination, 100, 500)) {
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> headers = (Map<String, Object>) message[1];
+                        headers.remove("id");
+                        headers.remove("timestamp");
+                        to.send(destination, (byte[]) message[0], headers);
+                        bridged.incrementAndGet();
+                    }
+                } catch (RuntimeException e) {
+                    if (running) {
+                        System.err.println("Bridge for " + destination + " failed: " + e);
+                    }
+                }
+            }
+        }, "bridge-" + destination);
+        bridge.setDaemon(true);
+        bridge.start();
+        bridges.add(bridge);
+    }
+
+    private static List<String> coreArgs(String service) {
+        List<String> args = new ArrayList<>(commonArgs());
+        if (service.equals(REVIEW)) {
+            args.add("--spring.datasource.url=jdbc:h2:mem:review-db;DB_CLOSE_DELAY=-1");
+            args.add("--spring.datasource.driver-class-name=org.h2.Driver");
+            args.add("--spring.datasource.username=sa");
+            args.add("--spring.datasource.password=");
+            args.add("--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect");
+        } else {
+            args.add("--spring.mongodb.embedded.version=3.6.9");
+            args.add("--spring.data.mongodb.port=0");
+        }
+        return args;
+    }
+
+    private static List<String> commonArgs() {
+        return List.of(
+            "--server.port=0",
+            "--eureka.client.enabled=false",
+            "--spring.main.banner-mode=off",
+            "--spring.jmx.enabled=false",
+            "--logging.level.root=WARN",
+            "--logging.level.com.mj=WARN",
+            "--logging.level.org.hibernate.SQL=WARN",
+            "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN",
+            "--logging.level.org.springframework.data.mongodb.core.MongoTemplate=WARN");
+    }
+}
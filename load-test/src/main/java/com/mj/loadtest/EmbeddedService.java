@@ -0,0 +1,62 @@
+package com.mj.loadtest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Runs one service inside its own class loader, with the test binder in place of the broker.
+ *
+ * Loaded by the class loader of the service, so it only exchanges JDK types with the
+ * ServiceNode on the other side: messages cross as payload bytes and headers, header values that
+ * are not JDK types are passed as strings.
+ */
+public class EmbeddedService {
+
+    private ConfigurableApplicationContext context;
+
+    public void start(String mainClass, String[] args) throws ClassNotFoundException {
+        Class<?> application = Class.forName(mainClass, true, getClass().getClassLoader());
+        context = new SpringApplicationBuilder(application, TestChannelBinderConfiguration.class).run(args);
+    }
+
+    public int getPort() {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    /**
+     * Waits up to timeoutMillis for the first message sent to the destination and returns it
+     * with the ones that are already waiting, at most max.
+     */
+    public List<Object[]> receive(String destination, long timeoutMillis, int max) {
+        OutputDestination output = context.getBean(OutputDestination.class);
+        List<Object[]> messages = new ArrayList<>();
+        Message<byte[]> message = output.receive(timeoutMillis, destination);
+        while (message != null) {
+            Map<String, Object> headers = new HashMap<>();
+            message.getHeaders().forEach((name, value) -> headers.put(name,
+                value.getClass().getName().startsWith("java.") ? value : value.toString()));
+            messages.add(new Object[] {message.getPayload(), headers});
+            message = messages.size() < max ? output.receive(0, destination) : null;
+        }
+        return messages;
+    }
+
+    public void send(String destination, byte[] payload, Map<String, Object> headers) {
+        context.getBean(InputDestination.class).send(MessageBuilder.withPayload(payload)
+            .copyHeaders(headers)
+            .build(), destination);
+    }
+
+    public void close() {
+        context.close();
+    }
+}
@@ -0,0 +1,110 @@
+package com.mj.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the consumer lag of a write: the time from the response of the composite until the
+ * events it published are visible in the core services.
+ *
+ * The core services are polled directly, the composite would answer from its cache. The
+ * recommendations and reviews of a product are visible once the core service returns as many
+ * of them as were written.
+ */
+class LagProbe {
+
+    private final HttpClient client;
+    private final Map<String, URI> services;
+    private final Duration pollInterval;
+    private final Duration timeout;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "lag-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Stats product = new Stats("lag product");
+    private final Stats recommendation = new Stats("lag recommendation");
+    private final Stats review = new Stats("lag review");
+
+    LagProbe(HttpClient client, Map<String, URI> services, Duration pollInterval, Duration timeout) {
+        this.client = client;
+        this.services = services;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Services missing from the map are not probed.
+     */
+    void probe(int productId, int recommendations, int reviews, long acceptedNanos) {
+        long deadline = acceptedNanos + timeout.toNanos();
+        if (services.containsKey(EmbeddedLandscape.PRODUCT)) {
+            poll(product, services.get(EmbeddedLandscape.PRODUCT).resolve("/product/" + productId), "\"productId\"", 1,
+                acceptedNanos, deadline);
+        }
+        if (recommendations > 0 && services.containsKey(EmbeddedLandscape.RECOMMENDATION)) {
+            poll(recommendation, services.get(EmbeddedLandscape.RECOMMENDATION).resolve("/recommendation?productId=" + productId),
+                "\"recommendationId\"", recommendations, acceptedNanos, deadline);
+        }
+        if (reviews > 0 && services.containsKey(EmbeddedLandscape.REVIEW)) {
+            poll(review, services.get(EmbeddedLandscape.REVIEW).resolve("/review?productId=" + productId),
+                "\"reviewId\"", reviews, acceptedNanos, deadline);
+        }
+    }
+
+    /**
+     * Waits up to the probe timeout for the probes in flight.
+     */
+    void awaitPending() throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (pending.get() > 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(pollInterval.toMillis());
+        }
+        scheduler.shutdownNow();
+    }
+
+    Stats[] getStats() {
+        return new Stats[] {product, recommendation, review};
+    }
+
+    private void poll(Stats stats, URI uri, String field, int expected, long acceptedNanos, long deadline) {
+        pending.incrementAndGet();
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Accept", "application/json").build();
+        Runnable attempt = new Runnable() {
+            @Override
+            public void run() {
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+                    long now = System.nanoTime();
+                    if (error == null && response.statusCode() == 200 && count(response.body(), field) >= expected) {
+                        stats.record(acceptedNanos, now);
+                        pending.decrementAndGet();
+                    } else if (now > deadline) {
+                        stats.error("not visible within " + timeout.toMillis() + " ms");
+                        pending.decrementAndGet();
+                    } else {
+                        scheduler.schedule(this, pollInterval.toNanos(), TimeUnit.NANOSECONDS);
+                    }
+                });
+            }
+        };
+        attempt.run();
+    }
+
+    private static int count(String body, String field) {
+        int count = 0;
+        for (int i = body.indexOf(field); i >= 0; i = body.indexOf(field, i + field.length())) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,232 @@
+package com.mj.loadtest;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a mix of reads and writes against /product-composite at a constant arrival rate.
+ *
+ * The requests are started on schedule whether or not the earlier ones have completed, and the
+ * latency of a request is measured from the time it was scheduled to start, so a stall of the
+ * landscape shows up in the percentiles instead of lowering the offered load. Requests that
+ * would exceed maxInFlight are not sent and count as errors.
+ *
+ * A write creates a new product with its recommendations and reviews. The events it publishes
+ * are applied later by the core services, so a written product is only read readAfter after
+ * its write was accepted.
+ */
+class LoadDriver {
+
+    record Workload(int rate, Duration warmup, Duration duration, double readRatio, int recommendations, int reviews,
+        int preload, Duration readAfter, int maxInFlight, double lagSampleRatio) {}
+
+    private static final int READABLE_CAPACITY = 1 << 16;
+
+    private final HttpClient client;
+    private final URI composite;
+    private final Workload workload;
+    private final LagProbe lagProbe;
+
+    private final Stats reads = new Stats("read");
+    private final Stats writes = new Stats("write");
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger nextProductId;
+    private final Queue<long[]> written = new ConcurrentLinkedQueue<>();
+    private final int[] readable = new int[READABLE_CAPACITY];
+    private int readableNext;
+    private int readableCount;
+
+    /**
+     * @param lagProbe null when the consumer lag is not measured
+     */
+    LoadDriver(HttpClient client, URI composite, Workload workload, LagProbe lagProbe, int firstProductId) {
+        this.client = client;
+        this.composite = composite;
+        this.workload = workload;
+        this.lagProbe = lagProbe;
+        this.nextProductId = new AtomicInteger(firstProductId);
+    }
+
+    void run(PrintStream out) throws InterruptedException {
+        preload(out);
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / workload.rate();
+        long start = System.nanoTime();
+        long measureFrom = start + workload.warmup().toNanos();
+        long end = measureFrom + workload.duration().toNanos();
+        out.printf("Warming up for %d s, then measuring for %d s at %d requests per second%n",
+            workload.warmup().toSeconds(), workload.duration().toSeconds(), workload.rate());
+
+        for (long intended = start; intended < end; intended += intervalNanos) {
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            makeWrittenReadable(intended);
+            boolean measured = intended >= measureFrom;
+            boolean read = readableCount > 0 && ThreadLocalRandom.current().nextDouble() < workload.readRatio();
+            Stats stats = read ? reads : writes;
+            if (inFlight.get() >= workload.maxInFlight()) {
+                if (measured) {
+                    stats.error("not sent, " + workload.maxInFlight() + " requests in flight");
+                }
+                continue;
+            }
+            if (read) {
+                read(readable[ThreadLocalRandom.current().nextInt(readableCount)],
+                    intended, measured ? reads : null);
+            } else {
+                write(intended, measured ? writes : null, measured && lagProbe != null
+                    && ThreadLocalRandom.current().nextDouble() < workload.lagSampleRatio());
+            }
+        }
+
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        if (lagProbe != null) {
+            lagProbe.awaitPending();
+        }
+
+        double seconds = workload.duration().toNanos() / 1e9;
+        out.println();
+        Stats.printHeader(out);
+        reads.print(out, seconds);
+        writes.print(out, seconds);
+        if (lagProbe != null) {
+            for (Stats stats : lagProbe.getStats()) {
+                stats.print(out, seconds);
+            }
+        }
+    }
+
+    /**
+     * Writes the products the reads start from and waits until the last one can be read.
+     */
+    private void preload(PrintStream out) throws InterruptedException {
+        if (workload.preload() == 0) {
+            return;
+        }
+        out.printf("Preloading %d products%n", workload.preload());
+        int last = 0;
+        for (int i = 0; i < workload.preload(); i++) {
+            last = nextProductId.getAndIncrement();
+            HttpResponse<Void> response = client.sendAsync(writeRequest(last), HttpResponse.BodyHandlers.discarding()).join();
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Preloading product " + last + " failed with " + response.statusCode());
+            }
+            addReadable(last);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (client.sendAsync(readRequest(last), HttpResponse.BodyHandlers.discarding()).join().statusCode() != 200) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Preloaded product " + last + " is not readable after 60 s");
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    private void read(int productId, long intended, Stats stats) {
+        inFlight.incrementAndGet();
+        client.sendAsync(readRequest(productId), HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long now = System.nanoTime();
+            inFlight.decrementAndGet();
+            complete(stats, intended, now, response, error);
+        });
+    }
+
+    private void write(long intended, Stats stats, boolean probeLag) {
+        int productId = nextProductId.getAndIncrement();
+        inFlight.incrementAndGet();
+        client.sendAsync(writeRequest(productId), HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long now = System.nanoTime();
+            inFlight.decrementAndGet();
+            if (complete(stats, intended, now, response, error)) {
+                written.add(new long[] {productId, now});
+                if (probeLag) {
+                    lagProbe.probe(productId, workload.recommendations(), workload.reviews(), now);
+                }
+            }
+        });
+    }
+
+    private static boolean complete(Stats stats, long intended, long now, HttpResponse<?> response, Throwable error) {
+        boolean ok = error == null && response.statusCode() == 200;
+        if (stats != null) {
+            if (ok) {
+                stats.record(intended, now);
+            } else {
+                stats.error(error != null ? rootCause(error).getClass().getName() : "HTTP " + response.statusCode());
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * Only called from the driving thread, the ring of the last readable ids is not shared.
+     */
+    private void makeWrittenReadable(long now) {
+        long readAfter = workload.readAfter().toNanos();
+        long[] head;
+        while ((head = written.peek()) != null && now - head[1] >= readAfter) {
+            written.poll();
+            addReadable((int) head[0]);
+        }
+    }
+
+    private void addReadable(int productId) {
+        readable[readableNext] = productId;
+        readableNext = (readableNext + 1) % READABLE_CAPACITY;
+        readableCount = Math.min(readableCount + 1, READABLE_CAPACITY);
+    }
+
+    private HttpRequest readRequest(int productId) {
+        return HttpRequest.newBuilder(composite.resolve("/product-composite/" + productId))
+            .header("Accept", "application/json")
+            .build();
+    }
+
+    private HttpRequest writeRequest(int productId) {
+        StringBuilder body = new StringBuilder(256)
+            .append("{\"productId\":").append(productId)
+            .append(",\"name\":\"load-test-").append(productId).append("\",\"weight\":1")
+            .append(",\"recommendations\":[");
+        for (int i = 1; i <= workload.recommendations(); i++) {
+            body.append(i > 1 ? "," : "")
+                .append("{\"recommendationId\":").append(i)
+                .append(",\"author\":\"author-").append(i).append("\",\"rate\":").append(i % 5 + 1)
+                .append(",\"content\":\"content-").append(i).append("\"}");
+        }
+        body.append("],\"reviews\":[");
+        for (int i = 1; i <= workload.reviews(); i++) {
+            body.append(i > 1 ? "," : "")
+                .append("{\"reviewId\":").append(i)
+                .append(",\"author\":\"author-").append(i)
+                .append("\",\"subject\":\"subject-").append(i)
+                .append("\",\"content\":\"content-").append(i).append("\"}");
+        }
+        body.append("]}");
+        return HttpRequest.newBuilder(composite.resolve("/product-composite"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+            .build();
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        while (error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,123 @@
+package com.mj.loadtest;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Starts the landscape in this JVM, drives a read/write mix against the composite at a constant
+ * rate and prints throughput, latency percentiles and consumer lag.
+ *
+ * ./gradlew :load-test:run --args='--rate=200 --duration=60s'
+ *
+ * Options, with their defaults:
+ *   --rate=100                requests per second
+ *   --warmup=10s              load before the measurement, not recorded
+ *   --duration=30s            measured load
+ *   --read-ratio=0.8          share of reads, the rest creates products
+ *   --recommendations=3       recommendations per created product
+ *   --reviews=3               reviews per created product
+ *   --preload=100             products created before the load starts
+ *   --read-after=1s           delay before a created product is read
+ *   --max-in-flight=1000      requests beyond are not sent and count as errors
+ *   --lag-sample=0.1          share of the measured writes probed for consumer lag, 0 disables it
+ *   --lag-timeout=30s
+ *   --first-product-id=1000000
+ *   --target=http://host:port drives a running composite instead, without consumer lag
+ *   --{service}.{property}=v  passes --{property}=v to product, recommendation, review or product-composite
+ */
+public class LoadTest {
+
+    private static final String CLASSPATH_PROPERTY = "loadtest.classpath.";
+    private static final List<String> SERVICES = List.of(EmbeddedLandscape.PRODUCT, EmbeddedLandscape.RECOMMENDATION,
+        EmbeddedLandscape.REVIEW, EmbeddedLandscape.PRODUCT_COMPOSITE);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        Map<String, List<String>> overrides = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            String service = SERVICES.stream().filter(s -> name.startsWith(s + ".")).findFirst().orElse(null);
+            if (service != null) {
+                overrides.computeIfAbsent(service, s -> new ArrayList<>())
+                    .add("--" + name.substring(service.length() + 1) + "=" + value);
+            } else {
+                options.put(name, value);
+            }
+        }
+
+        LoadDriver.Workload workload = new LoadDriver.Workload(
+            Integer.parseInt(options.getOrDefault("rate", "100")),
+            duration(options.getOrDefault("warmup", "10s")),
+            duration(options.getOrDefault("duration", "30s")),
+            Double.parseDouble(options.getOrDefault("read-ratio", "0.8")),
+            Integer.parseInt(options.getOrDefault("recommendations", "3")),
+            Integer.parseInt(options.getOrDefault("reviews", "3")),
+            Integer.parseInt(options.getOrDefault("preload", "100")),
+            duration(options.getOrDefault("read-after", "1s")),
+            Integer.parseInt(options.getOrDefault("max-in-flight", "1000")),
+            Double.parseDouble(options.getOrDefault("lag-sample", "0.1")));
+        Duration lagTimeout = duration(options.getOrDefault("lag-timeout", "30s"));
+        int firstProductId = Integer.parseInt(options.getOrDefault("first-product-id", "1000000"));
+
+        PrintStream out = System.out;
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(executor)
+            .build();
+        try {
+            if (options.containsKey("target")) {
+                new LoadDriver(client, URI.create(options.get("target")), workload, null, firstProductId).run(out);
+                return;
+            }
+
+            Map<String, String> classpaths = new HashMap<>();
+            for (String service : SERVICES) {
+                String classpath = System.getProperty(CLASSPATH_PROPERTY + service);
+                if (classpath != null) {
+                    classpaths.put(service, classpath);
+                }
+            }
+            try (EmbeddedLandscape landscape = EmbeddedLandscape.start(classpaths, overrides, out)) {
+                LagProbe lagProbe = workload.lagSampleRatio() > 0 ? new LagProbe(client, Map.of(
+                    EmbeddedLandscape.PRODUCT, landscape.getUri(EmbeddedLandscape.PRODUCT),
+                    EmbeddedLandscape.RECOMMENDATION, landscape.getUri(EmbeddedLandscape.RECOMMENDATION),
+                    EmbeddedLandscape.REVIEW, landscape.getUri(EmbeddedLandscape.REVIEW)),
+                    Duration.ofMillis(10), lagTimeout) : null;
+                new LoadDriver(client, landscape.getUri(EmbeddedLandscape.PRODUCT_COMPOSITE), workload, lagProbe,
+                    firstProductId).run(out);
+                out.printf("%nEvents bridged from the composite to the core services: %d%n", landscape.getBridgedCount());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 500ms, 30s or 2m
+     */
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            default -> throw new IllegalArgumentException("Expected a duration like 500ms, 30s or 2m, got " + value);
+        };
+    }
+}
@@ -0,0 +1,107 @@
+package com.mj.loadtest;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A service of the landscape, started in a class loader of its own over its runtime classpath.
+ *
+ * All services scan com.mj and read their own application.yml, so they can't share a class
+ * loader. The class loader has the platform class loader as parent, so nothing but the JDK is
+ * shared, like with one process per service. The service is driven through an EmbeddedService
+ * loaded from its class loader, by reflection with JDK types only.
+ */
+class ServiceNode implements AutoCloseable {
+
+    private final String name;
+    private final URLClassLoader classLoader;
+    private final Object service;
+
+    private ServiceNode(String name, URLClassLoader classLoader, Object service) {
+        this.name = name;
+        this.classLoader = classLoader;
+        this.service = service;
+    }
+
+    static ServiceNode start(String name, String classpath, String mainClass, List<String> args) {
+        URLClassLoader classLoader = new URLClassLoader(name, urls(classpath), ClassLoader.getPlatformClassLoader());
+        try {
+            Object service = classLoader.loadClass(EmbeddedService.class.getName()).getConstructor().newInstance();
+            ServiceNode node = new ServiceNode(name, classLoader, service);
+            node.invoke("start", new Class<?>[] {String.class, String[].class}, mainClass, args.toArray(String[]::new));
+            return node;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to start " + name, e);
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    int getPort() {
+        return (Integer) invoke("getPort", new Class<?>[0]);
+    }
+
+    /**
+     * @return pairs of payload bytes and headers
+     */
+    @SuppressWarnings("unchecked")
+    List<Object[]> receive(String destination, long timeoutMillis, int max) {
+        return (List<Object[]>) invoke("receive", new Class<?>[] {String.class, long.class, int.class},
+            destination, timeoutMillis, max);
+    }
+
+    void send(String destination, byte[] payload, Map<String, Object> headers) {
+        invoke("send", new Class<?>[] {String.class, byte[].class, Map.class}, destination, payload, headers);
+    }
+
+    @Override
+    public void close() throws Exception {
+        try {
+            invoke("close", new Class<?>[0]);
+        } finally {
+            classLoader.close();
+        }
+    }
+
+    /**
+     * Threads the service starts inherit the context class loader of the calling thread, and
+     * libraries like Jackson look up classes through it, so it is the class loader of the
+     * service during the call.
+     */
+    private Object invoke(String methodName, Class<?>[] parameterTypes, Object... args) {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            Method method = service.getClass().getMethod(methodName, parameterTypes);
+            return method.invoke(service, args);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(name + " failed in " + methodName, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private static URL[] urls(String classpath) {
+        List<URL> urls = new ArrayList<>();
+        for (String entry : classpath.split(File.pathSeparator)) {
+            try {
+                urls.add(new File(entry).toURI().toURL());
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Invalid classpath entry " + entry, e);
+            }
+        }
+        return urls.toArray(URL[]::new);
+    }
+}
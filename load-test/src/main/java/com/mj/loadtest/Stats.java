@@ -0,0 +1,54 @@
+package com.mj.loadtest;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latencies in microseconds and errors by cause of one kind of operation.
+ */
+class Stats {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final String name;
+    private final Histogram latencies = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+    private final Map<String, LongAdder> errors = new ConcurrentSkipListMap<>();
+
+    Stats(String name) {
+        this.name = name;
+    }
+
+    void record(long startNanos, long endNanos) {
+        latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos), HIGHEST_TRACKABLE_MICROS));
+    }
+
+    void error(String cause) {
+        errors.computeIfAbsent(cause, c -> new LongAdder()).increment();
+    }
+
+    long getErrorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    static void printHeader(PrintStream out) {
+        out.printf("%-24s %10s %8s %10s %10s %10s %10s %10s%n",
+            "", "count", "errors", "per sec", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    void print(PrintStream out, double seconds) {
+        long count = latencies.getTotalCount();
+        out.printf("%-24s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", name, count, getErrorCount(), count / seconds,
+            millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+            millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue()));
+        errors.forEach((cause, n) -> out.printf("%-24s %10s %8d  %s%n", "", "", n.sum(), cause));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.mj.microservices.composite.product.loadbalancer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Latency and in-flight requests per core service instance, recorded by the WebClient of the
+ * ProductCompositeIntegration.
+ *
+ * The filter runs after the load balancer resolved the instance, so it sees its host and port.
+ * The latency to the response headers is kept as an EWMA that decays with a time constant of
+ * decayTime, so that an instance that was slow recovers once it answers fast again. A failed
+ * exchange or a 5xx response is recorded with at least failurePenalty, so that an instance that
+ * fails fast does not look like the fastest one.
+ */
+@Component
+public class InstanceStats implements ExchangeFilterFunction {
+
+    private final double decayNanos;
+    private final long failurePenaltyNanos;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public InstanceStats(
+        @Value("${app.product-composite.load-balancer.decay-time:10s}") Duration decayTime,
+        @Value("${app.product-composite.load-balancer.failure-penalty:1s}") Duration failurePenalty) {
+        this.decayNanos = decayTime.toNanos();
+        this.failurePenaltyNanos = failurePenalty.toNanos();
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            Stats instance = stats(request.url());
+            long start = System.nanoTime();
+            instance.inFlight.incrementAndGet();
+            return next.exchange(request)
+                .doOnSuccess(response -> {
+                    long latencyNanos = System.nanoTime() - start;
+                    instance.record(isServerError(response) ? Math.max(failurePenaltyNanos, latencyNanos) : latencyNanos,
+                        decayNanos);
+                })
+                .doOnError(e -> instance.record(Math.max(failurePenaltyNanos, System.nanoTime() - start), decayNanos))
+                .doFinally(signal -> instance.inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * The expected wait for a new request to the instance: its latency EWMA scaled by the
+     * requests it is already serving. Instances without recorded latency cost the least, so
+     * that new instances are tried.
+     */
+    public double getCost(ServiceInstance serviceInstance) {
+        Stats instance = stats.get(key(serviceInstance.getHost(), serviceInstance.getPort()));
+        if (instance == null) {
+            return 1;
+        }
+        return (instance.ewmaNanos + 1) * (instance.inFlight.get() + 1);
+    }
+
+    private static boolean isServerError(ClientResponse response) {
+        return response != null && HttpStatus.Series.resolve(response.rawStatusCode()) == HttpStatus.Series.SERVER_ERROR;
+    }
+
+    private Stats stats(URI url) {
+        return stats.computeIfAbsent(key(url.getHost(), url.getPort()), key -> new Stats());
+    }
+
+    private static String key(String host, int port) {
+        return host + ":" + port;
+    }
+
+    private static class Stats {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double ewmaNanos;
+        private long updatedAt;
+
+        private synchronized void record(long latencyNanos, double decayNanos) {
+            long now = System.nanoTime();
+            if (updatedAt == 0) {
+                ewmaNanos = latencyNanos;
+            } else {
+                double weight = Math.exp(-(now - updatedAt) / decayNanos);
+                ewmaNanos = ewmaNanos * weight + latencyNanos * (1 - weight);
+            }
+            updatedAt = now;
+        }
+    }
+}
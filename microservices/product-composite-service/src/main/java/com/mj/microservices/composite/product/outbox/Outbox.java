@@ -0,0 +1,171 @@
+package com.mj.microservices.composite.product.outbox;
+
+import com.mj.api.event.EventReceipt;
+import com.mj.api.event.EventReceipt.Status;
+import com.mj.microservices.composite.product.services.EventPublisher;
+import com.mj.microservices.composite.product.services.OutgoingEvent;
+import com.mj.util.tracing.ReactiveTracing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Transactional outbox in front of the EventPublisher.
+ *
+ * Writes are appended to the OutboxStore and answered with STORED receipts, without a broker
+ * round trip. A relay drains the store in batches of batchSize entries, publishing the events
+ * with confirm so that the store position is only committed once the broker acknowledged every
+ * event of the batch. Events of the same binding and key are published in order, the others
+ * concurrently. A failed batch is retried from its start, so events can be published more than
+ * once; consumers recognize them by their eventId.
+ *
+ * Each event is stored with the trace of its write and published in it by the relay. The events
+ * of a committed batch are handed to onRelayed, which lets the cached aggregates of their
+ * products be invalidated once the broker has them.
+ *
+ * The relay runs every pollInterval and as soon as an entry is appended. Its lag is exposed as
+ * the composite.outbox.lag.entries and composite.outbox.lag.seconds gauges.
+ */
+@Slf4j
+public class Outbox {
+
+    private final OutboxStore store;
+    private final EventPublisher eventPublisher;
+    private final Scheduler publishScheduler;
+    private final int batchSize;
+    private final int concurrency;
+    private final Consumer<List<OutgoingEvent>> onRelayed;
+    private final Sinks.Many<Boolean> appended = Sinks.many().multicast().directBestEffort();
+    private final Counter relayedEvents;
+    private final Counter relayFailures;
+    private final Disposable relay;
+
+    public Outbox(OutboxStore store, EventPublisher eventPublisher, Scheduler publishScheduler,
+        MeterRegistry meterRegistry, Duration pollInterval, int batchSize, int concurrency,
+        Consumer<List<OutgoingEvent>> onRelayed) {
+        this.store = store;
+        this.eventPublisher = eventPublisher;
+        this.publishScheduler = publishScheduler;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.onRelayed = onRelayed;
+
+        Gauge.builder("composite.outbox.lag.entries", store, OutboxStore::getPendingEntries)
+            .description("Outbox entries that are not published yet")
+            .register(meterRegistry);
+        Gauge.builder("composite.outbox.lag.seconds", store, Outbox::lagSeconds)
+            .description("Age of the oldest outbox entry that is not published yet")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        relayedEvents = Counter.builder("composite.outbox.relayed.events").register(meterRegistry);
+        relayFailures = Counter.builder("composite.outbox.relay.failures").register(meterRegistry);
+
+        relay = Flux.merge(Flux.interval(pollInterval).map(tick -> Boolean.TRUE), appended.asFlux())
+            .onBackpressureDrop()
+            .concatMap(trigger -> relayPending(), 1)
+            .subscribe();
+    }
+
+    /**
+     * Stores the events as one entry. With force the entry is flushed to disk before the
+     * receipts are returned.
+     */
+    public Mono<List<EventReceipt>> append(List<OutgoingEvent> events, boolean force) {
+        return Mono.deferContextual(context -> {
+                String trace = ReactiveTracing.currentTrace(context);
+                return Mono.fromCallable(() -> {
+                    store.append(trace == null ? events : withTrace(events, trace), force);
+                    List<EventReceipt> receipts = new ArrayList<>(events.size());
+                    for (OutgoingEvent event : events) {
+                        receipts.add(EventReceipt.of(event.event(), event.bindingName(), Status.STORED));
+                    }
+                    return receipts;
+                });
+            })
+            .subscribeOn(publishScheduler)
+            .doOnSuccess(receipts -> appended.tryEmitNext(Boolean.TRUE));
+    }
+
+    public void dispose() {
+        relay.dispose();
+        store.close();
+    }
+
+    /**
+     * Relays batches until the store is drained or a batch fails.
+     */
+    private Mono<Void> relayPending() {
+        return relayBatch()
+            .expand(relayed -> relayed == batchSize ? relayBatch() : Mono.empty())
+            .then();
+    }
+
+    /**
+     * @return the number of relayed entries, 0 if the batch failed
+     */
+    private Mono<Integer> relayBatch() {
+        return Mono.defer(() -> {
+            List<OutboxStore.Entry> entries = store.read(batchSize);
+            if (entries.isEmpty()) {
+                return Mono.just(0);
+            }
+
+            Map<String, List<OutgoingEvent>> eventsByKey = new LinkedHashMap<>();
+            List<OutgoingEvent> events = new ArrayList<>();
+            for (OutboxStore.Entry entry : entries) {
+                for (OutgoingEvent event : entry.events()) {
+                    eventsByKey.computeIfAbsent(event.bindingName() + ":" + event.event().getKey(),
+                        key -> new ArrayList<>()).add(event);
+                    events.add(event);
+                }
+            }
+
+            return Flux.fromIterable(eventsByKey.values())
+                .flatMap(keyEvents -> Flux.fromIterable(keyEvents)
+                    .concatMap(event -> eventPublisher.publish(event.bindingName(), event.event(), true)
+                        .contextWrite(ReactiveTracing.continueTrace(event.trace()))), concurrency)
+                .all(receipt -> receipt.getStatus() != Status.FAILED)
+                .map(published -> {
+                    if (!published) {
+                        relayFailures.increment();
+                        return 0;
+                    }
+                    store.commit(entries.get(entries.size() - 1).nextPosition(), entries.size());
+                    relayedEvents.increment(events.size());
+                    log.debug("Relayed {} outbox entries", entries.size());
+                    onRelayed.accept(events);
+                    return entries.size();
+                });
+        })
+        .onErrorResume(e -> {
+            log.warn("Outbox relay failed, will retry: {}", e.toString());
+            relayFailures.increment();
+            return Mono.just(0);
+        });
+    }
+
+    private static List<OutgoingEvent> withTrace(List<OutgoingEvent> events, String trace) {
+        List<OutgoingEvent> traced = new ArrayList<>(events.size());
+        for (OutgoingEvent event : events) {
+            traced.add(event.withTrace(trace));
+        }
+        return traced;
+    }
+
+    private static double lagSeconds(OutboxStore store) {
+        long oldest = store.getOldestPendingAppendedAt();
+        return oldest == 0 ? 0 : (System.currentTimeMillis() - oldest) / 1000.0;
+    }
+}
@@ -0,0 +1,39 @@
+package com.mj.microservices.composite.product.outbox;
+
+import com.mj.microservices.composite.product.services.EventPublisher;
+import com.mj.microservices.composite.product.services.ProductAggregateCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import reactor.core.scheduler.Scheduler;
+
+@Configuration
+@ConditionalOnProperty(name = "app.product-composite.outbox.enabled", havingValue = "true")
+@Slf4j
+public class OutboxConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public Outbox outbox(EventPublisher eventPublisher,
+        ProductAggregateCache aggregateCache,
+        @Qualifier("publishScheduler") Scheduler publishScheduler,
+        MeterRegistry meterRegistry,
+        @Value("${app.product-composite.outbox.directory:${java.io.tmpdir}/product-composite-outbox}") Path directory,
+        @Value("${app.product-composite.outbox.segment-size:64MB}") DataSize segmentSize,
+        @Value("${app.product-composite.outbox.poll-interval:100ms}") Duration pollInterval,
+        @Value("${app.product-composite.outbox.batch-size:100}") int batchSize,
+        @Value("${app.product-composite.outbox.concurrency:16}") int concurrency) throws IOException {
+
+        log.info("Creates an outbox in {}, segmentSize: {}, batchSize: {}", directory, segmentSize, batchSize);
+        return new Outbox(new OutboxStore(directory, (int) segmentSize.toBytes()), eventPublisher,
+            publishScheduler, meterRegistry, pollInterval, batchSize, concurrency,
+            events -> events.forEach(e -> aggregateCache.invalidateAfterWrite(e.event().getKey())));
+    }
+}
@@ -0,0 +1,285 @@
+package com.mj.microservices.composite.product.outbox;
+
+import com.mj.api.event.EventCodec;
+import com.mj.microservices.composite.product.services.OutgoingEvent;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only outbox of events, stored in memory-mapped segment files of segmentSize bytes.
+ *
+ * Each append is one entry holding all events of a write, so a crash either keeps the whole
+ * write or none of it. An entry is a length, a CRC32 and a body with the append time and the
+ * events in EventCodec format, followed by the trace of each event. Entries without the traces
+ * read as untraced events. The length is written last, so a torn entry reads as the end of
+ * the log. Positions are logical offsets over all segments; the relay commits the position it
+ * has published up to, and segments before it are deleted.
+ */
+@Slf4j
+public class OutboxStore implements Closeable {
+
+    /**
+     * A stored write, and the position of the entry after it.
+     */
+    public record Entry(long appendedAt, List<OutgoingEvent> events, long nextPosition) {
+    }
+
+    private static final int HEADER_SIZE = 8;
+    private static final int END_OF_SEGMENT = -1;
+    private static final String CURSOR_FILE = "cursor";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final NavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final MappedByteBuffer cursor;
+
+    private volatile long writePosition;
+    private volatile long committedPosition;
+    private volatile long appendedEntries;
+    private volatile long committedEntries;
+
+    public OutboxStore(Path directory, int segmentSize) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(CURSOR_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            cursor = channel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        }
+        committedPosition = cursor.getLong(0);
+        recover();
+    }
+
+    /**
+     * Appends the events as one entry. With force the segment is flushed to disk before
+     * returning, otherwise the OS writes it back, which survives a crash of the process but not
+     * of the host.
+     */
+    public synchronized void append(List<OutgoingEvent> events, boolean force) {
+        byte[] body = encode(events);
+        int entrySize = HEADER_SIZE + body.length;
+        if (entrySize > segmentSize) {
+            throw new IllegalArgumentException("Outbox entry of " + entrySize + " bytes exceeds the segment size");
+        }
+
+        long position = writePosition;
+        if (offset(position) + entrySize > segmentSize) {
+            if (segmentSize - offset(position) >= Integer.BYTES) {
+                segment(position).putInt(offset(position), END_OF_SEGMENT);
+            }
+            position = nextSegment(position);
+        }
+
+        MappedByteBuffer segment = segment(position);
+        int offset = offset(position);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        segment.put(offset + HEADER_SIZE, body);
+        segment.putInt(offset + Integer.BYTES, (int) crc.getValue());
+        segment.putInt(offset, body.length);
+        if (force) {
+            segment.force();
+        }
+
+        writePosition = position + entrySize;
+        appendedEntries++;
+    }
+
+    /**
+     * Reads at most maxEntries entries after the committed position.
+     */
+    public List<Entry> read(int maxEntries) {
+        List<Entry> entries = new ArrayList<>();
+        long position = committedPosition;
+        while (entries.size() < maxEntries && position < writePosition) {
+            Entry entry = readEntry(position);
+            if (entry == null) {
+                position = nextSegment(position);
+                continue;
+            }
+            entries.add(entry);
+            position = entry.nextPosition();
+        }
+        return entries;
+    }
+
+    /**
+     * Marks the entries before position as published and deletes the segments before it.
+     */
+    public synchronized void commit(long position, int entries) {
+        committedPosition = position;
+        committedEntries += entries;
+        cursor.putLong(0, position);
+
+        long firstSegment = position - offset(position);
+        for (Long base : List.copyOf(segments.headMap(firstSegment).keySet())) {
+            segments.remove(base);
+            try {
+                Files.deleteIfExists(segmentFile(base));
+            } catch (IOException e) {
+                log.warn("Failed to delete outbox segment {}: {}", segmentFile(base), e.toString());
+            }
+        }
+    }
+
+    public long getPendingEntries() {
+        return appendedEntries - committedEntries;
+    }
+
+    /**
+     * @return the append time of the oldest entry that is not published yet, or 0 if there is none
+     */
+    public long getOldestPendingAppendedAt() {
+        long position = committedPosition;
+        while (position < writePosition) {
+            ByteBuffer segment = segment(position);
+            int offset = offset(position);
+            if (segmentSize - offset < HEADER_SIZE || segment.getInt(offset) == END_OF_SEGMENT) {
+                position = nextSegment(position);
+                continue;
+            }
+            return segment.getLong(offset + HEADER_SIZE);
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        cursor.force();
+        segments.values().forEach(MappedByteBuffer::force);
+        segments.clear();
+    }
+
+    /**
+     * Finds the write position by scanning from the committed position to the first empty or
+     * torn entry.
+     */
+    private void recover() {
+        long position = committedPosition;
+        long pending = 0;
+        while (true) {
+            if (!Files.exists(segmentFile(position - offset(position)))) {
+                break;
+            }
+            ByteBuffer segment = segment(position);
+            int offset = offset(position);
+            if (segmentSize - offset < HEADER_SIZE || segment.getInt(offset) == END_OF_SEGMENT) {
+                position = nextSegment(position);
+                continue;
+            }
+            int length = segment.getInt(offset);
+            if (length <= 0 || length > segmentSize - offset - HEADER_SIZE
+                || !validChecksum(segment, offset, length)) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+            pending++;
+        }
+        writePosition = position;
+        appendedEntries = pending;
+        log.info("Opened outbox in {} with {} pending entries", directory, pending);
+    }
+
+    private Entry readEntry(long position) {
+        ByteBuffer segment = segment(position).duplicate();
+        int offset = offset(position);
+        if (segmentSize - offset < HEADER_SIZE || segment.getInt(offset) == END_OF_SEGMENT) {
+            return null;
+        }
+
+        int length = segment.getInt(offset);
+        segment.position(offset + HEADER_SIZE);
+        long appendedAt = segment.getLong();
+        int count = segment.getInt();
+        List<OutgoingEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bindingName = new byte[segment.getShort()];
+            segment.get(bindingName);
+            byte[] event = new byte[segment.getInt()];
+            segment.get(event);
+            events.add(new OutgoingEvent(new String(bindingName, StandardCharsets.UTF_8),
+                EventCodec.decode(event)));
+        }
+        if (segment.position() < offset + HEADER_SIZE + length) {
+            for (int i = 0; i < count; i++) {
+                byte[] trace = new byte[segment.getShort()];
+                segment.get(trace);
+                if (trace.length > 0) {
+                    events.set(i, events.get(i).withTrace(new String(trace, StandardCharsets.US_ASCII)));
+                }
+            }
+        }
+        return new Entry(appendedAt, events, position + HEADER_SIZE + length);
+    }
+
+    private static byte[] encode(List<OutgoingEvent> events) {
+        List<byte[]> bindingNames = new ArrayList<>(events.size());
+        List<byte[]> encoded = new ArrayList<>(events.size());
+        List<byte[]> traces = new ArrayList<>(events.size());
+        int size = Long.BYTES + Integer.BYTES;
+        for (OutgoingEvent event : events) {
+            byte[] bindingName = event.bindingName().getBytes(StandardCharsets.UTF_8);
+            byte[] bytes = EventCodec.encode(event.event());
+            byte[] trace = event.trace() == null ? new byte[0] : event.trace().getBytes(StandardCharsets.US_ASCII);
+            bindingNames.add(bindingName);
+            encoded.add(bytes);
+            traces.add(trace);
+            size += Short.BYTES + bindingName.length + Integer.BYTES + bytes.length + Short.BYTES + trace.length;
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(size);
+        body.putLong(System.currentTimeMillis());
+        body.putInt(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            body.putShort((short) bindingNames.get(i).length).put(bindingNames.get(i));
+            body.putInt(encoded.get(i).length).put(encoded.get(i));
+        }
+        for (byte[] trace : traces) {
+            body.putShort((short) trace.length).put(trace);
+        }
+        return body.array();
+    }
+
+    private static boolean validChecksum(ByteBuffer segment, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(segment.duplicate().position(offset + HEADER_SIZE).limit(offset + HEADER_SIZE + length));
+        return (int) crc.getValue() == segment.getInt(offset + Integer.BYTES);
+    }
+
+    private MappedByteBuffer segment(long position) {
+        return segments.computeIfAbsent(position - offset(position), base -> {
+            try (FileChannel channel = FileChannel.open(segmentFile(base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private Path segmentFile(long base) {
+        return directory.resolve(String.format("%020d.segment", base));
+    }
+
+    private int offset(long position) {
+        return (int) (position % segmentSize);
+    }
+
+    private long nextSegment(long position) {
+        return position - offset(position) + segmentSize;
+    }
+}
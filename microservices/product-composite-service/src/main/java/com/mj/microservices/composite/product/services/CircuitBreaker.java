@@ -0,0 +1,200 @@
+package com.mj.microservices.composite.product.services;
+
+import com.mj.util.exceptions.InvalidInputException;
+import com.mj.util.exceptions.NotFoundException;
+import com.mj.util.exceptions.ServiceUnavailableException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Count based circuit breaker and timeout for the calls to one core service.
+ *
+ * The outcomes of the last windowSize calls are kept in a ring. Once minimumCalls are recorded
+ * and failureRateThreshold percent of them failed, the breaker opens and rejects calls for
+ * openWait. It is then half-open and lets a single probe call through: a success closes it, a
+ * failure opens it again. Outcomes of calls that were let through before the breaker opened, and
+ * finish while it is open or half-open, are ignored. Timeouts, connection errors and 5xx responses are failures, NotFound
+ * and InvalidInput responses are not. Rejected and timed out calls fail with a
+ * ServiceUnavailableException.
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private enum Admission { REJECTED, CALL, PROBE }
+
+    private final String name;
+    private final Duration timeout;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openWaitMillis;
+    private final LongSupplier clock;
+
+    private final boolean[] failed;
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(String name, Duration timeout, int windowSize, int minimumCalls,
+        int failureRateThreshold, Duration openWait) {
+        this(name, timeout, windowSize, minimumCalls, failureRateThreshold, openWait, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, Duration timeout, int windowSize, int minimumCalls,
+        int failureRateThreshold, Duration openWait, LongSupplier clock) {
+        this.name = name;
+        this.timeout = timeout;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openWaitMillis = openWait.toMillis();
+        this.clock = clock;
+        this.failed = new boolean[windowSize];
+    }
+
+    public <T> Mono<T> protect(Mono<T> call) {
+        return Mono.defer(() -> {
+            Admission admission = tryAcquire();
+            if (admission == Admission.REJECTED) {
+                return Mono.error(rejected());
+            }
+            boolean probe = admission == Admission.PROBE;
+            return call
+                .timeout(timeout)
+                .doOnSuccess(value -> onSuccess(probe))
+                .doOnError(error -> onError(error, probe))
+                .doOnCancel(() -> onCancel(probe))
+                .onErrorMap(TimeoutException.class, this::timedOut);
+        });
+    }
+
+    /**
+     * The timeout applies to the first element and to the time between elements.
+     */
+    public <T> Flux<T> protect(Flux<T> call) {
+        return Flux.defer(() -> {
+            Admission admission = tryAcquire();
+            if (admission == Admission.REJECTED) {
+                return Flux.error(rejected());
+            }
+            boolean probe = admission == Admission.PROBE;
+            return call
+                .timeout(timeout)
+                .doOnComplete(() -> onSuccess(probe))
+                .doOnError(error -> onError(error, probe))
+                .doOnCancel(() -> onCancel(probe))
+                .onErrorMap(TimeoutException.class, this::timedOut);
+        });
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openWaitMillis) {
+            state = State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private synchronized Admission tryAcquire() {
+        State current = getState();
+        if (current == State.CLOSED) {
+            return Admission.CALL;
+        }
+        if (current == State.HALF_OPEN && !probing) {
+            log.info("Circuit breaker for {} is half-open, lets a probe call through", name);
+            probing = true;
+            return Admission.PROBE;
+        }
+        return Admission.REJECTED;
+    }
+
+    /**
+     * Only the probe moves the breaker out of half-open, the outcomes of other calls only count
+     * while it is closed.
+     */
+    private synchronized void onSuccess(boolean probe) {
+        if (probe) {
+            log.info("Circuit breaker for {} closes", name);
+            reset(State.CLOSED);
+            return;
+        }
+        if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    private synchronized void onError(Throwable error, boolean probe) {
+        if (!isFailure(error)) {
+            onSuccess(probe);
+            return;
+        }
+        if (probe) {
+            open();
+            return;
+        }
+        if (state != State.CLOSED) {
+            return;
+        }
+        record(true);
+        if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+            open();
+        }
+    }
+
+    private synchronized void onCancel(boolean probe) {
+        if (probe) {
+            probing = false;
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recorded == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        failures += failure ? 1 : 0;
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        log.warn("Circuit breaker for {} opens after {} failures in {} calls", name, failures, recorded);
+        reset(State.OPEN);
+        openedAt = clock.getAsLong();
+    }
+
+    private void reset(State newState) {
+        state = newState;
+        probing = false;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+
+    private ServiceUnavailableException rejected() {
+        return new ServiceUnavailableException("Circuit breaker for " + name + " is open");
+    }
+
+    private ServiceUnavailableException timedOut(Throwable error) {
+        return new ServiceUnavailableException(name + " did not respond within " + timeout.toMillis() + " ms", error);
+    }
+
+    private static boolean isFailure(Throwable error) {
+        if (error instanceof NotFoundException || error instanceof InvalidInputException) {
+            return false;
+        }
+        return !(error instanceof WebClientResponseException e) || e.getStatusCode().is5xxServerError();
+    }
+}
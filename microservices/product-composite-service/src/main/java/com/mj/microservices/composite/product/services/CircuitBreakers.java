@@ -0,0 +1,44 @@
+package com.mj.microservices.composite.product.services;
+
+import java.time.Duration;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * One CircuitBreaker per core service, with a timeout per service and shared breaker settings.
+ */
+@Component
+@Slf4j
+public class CircuitBreakers {
+
+    public static final String PRODUCT = "product";
+    public static final String RECOMMENDATION = "recommendation";
+    public static final String REVIEW = "review";
+
+    private final Map<String, CircuitBreaker> breakers;
+
+    public CircuitBreakers(
+        @Value("${app.product-composite.timeout.product:2s}") Duration productTimeout,
+        @Value("${app.product-composite.timeout.recommendation:1s}") Duration recommendationTimeout,
+        @Value("${app.product-composite.timeout.review:1s}") Duration reviewTimeout,
+        @Value("${app.product-composite.circuit-breaker.window-size:20}") int windowSize,
+        @Value("${app.product-composite.circuit-breaker.minimum-calls:10}") int minimumCalls,
+        @Value("${app.product-composite.circuit-breaker.failure-rate-threshold:50}") int failureRateThreshold,
+        @Value("${app.product-composite.circuit-breaker.open-wait:10s}") Duration openWait) {
+
+        log.info("Creates circuit breakers, timeouts: {}/{}/{}, windowSize: {}, failureRateThreshold: {}%, openWait: {}",
+            productTimeout, recommendationTimeout, reviewTimeout, windowSize, failureRateThreshold, openWait);
+
+        breakers = Map.of(
+            PRODUCT, new CircuitBreaker(PRODUCT, productTimeout, windowSize, minimumCalls, failureRateThreshold, openWait),
+            RECOMMENDATION, new CircuitBreaker(RECOMMENDATION, recommendationTimeout, windowSize, minimumCalls,
+                failureRateThreshold, openWait),
+            REVIEW, new CircuitBreaker(REVIEW, reviewTimeout, windowSize, minimumCalls, failureRateThreshold, openWait));
+    }
+
+    public CircuitBreaker get(String service) {
+        return breakers.get(service);
+    }
+}
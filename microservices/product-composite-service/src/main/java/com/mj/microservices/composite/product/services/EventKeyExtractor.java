@@ -0,0 +1,32 @@
+package com.mj.microservices.composite.product.services;
+
+import com.mj.api.event.Event;
+import org.springframework.cloud.stream.binder.PartitionKeyExtractorStrategy;
+import org.springframework.messaging.Message;
+import org.springframework.stereotype.Component;
+
+/**
+ * Partition key of the output bindings, selected with producer.partition-key-extractor-name.
+ *
+ * The binder partitions a message after its payload has been converted, so the key is read from
+ * the event-key header that ProductCompositeIntegration sets on every event. No SpEL expression
+ * is evaluated per message, and all events for a product land on the same partition.
+ */
+@Component(EventKeyExtractor.NAME)
+public class EventKeyExtractor implements PartitionKeyExtractorStrategy {
+
+    public static final String NAME = "eventKeyExtractor";
+    public static final String KEY_HEADER = "event-key";
+
+    @Override
+    public Object extractKey(Message<?> message) {
+        Object key = message.getHeaders().get(KEY_HEADER);
+        if (key == null && message.getPayload() instanceof Event<?, ?> event) {
+            key = event.getKey();
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("Message without an " + KEY_HEADER + " header can't be partitioned");
+        }
+        return key;
+    }
+}
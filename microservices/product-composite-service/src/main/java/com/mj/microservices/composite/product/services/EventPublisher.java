@@ -0,0 +1,125 @@
+package com.mj.microservices.composite.product.services;
+
+import com.mj.api.event.Event;
+import com.mj.api.event.EventReceipt;
+import com.mj.api.event.EventReceipt.Status;
+import com.mj.util.tracing.ReactiveTracing;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Publishes events through StreamBridge without blocking the caller.
+ *
+ * The binders write to the broker on the sending thread, so sends run on the publishScheduler.
+ * When a confirmed send is asked for, the returned receipt waits for the broker acknowledgement:
+ * Rabbit completes the CorrelationData header of the message and Kafka sends the RecordMetadata
+ * of each record to the eventRecordMetadata channel, where it is matched by the event id header.
+ *
+ * Each send is traced as a producer span, from the send until the receipt, and the message
+ * carries it to the consumer in its b3 header.
+ */
+@Component
+@Slf4j
+public class EventPublisher {
+
+    public enum ConfirmMode { NONE, RABBIT, KAFKA }
+
+    public static final String EVENT_ID_HEADER = "event-id";
+    public static final String RECORD_METADATA_CHANNEL = "eventRecordMetadata";
+
+    private final StreamBridge streamBridge;
+    private final ReactiveTracing tracing;
+    private final Scheduler publishScheduler;
+    private final ConfirmMode confirmMode;
+    private final Duration confirmTimeout;
+    private final Map<String, Sinks.One<RecordMetadata>> pendingRecords = new ConcurrentHashMap<>();
+
+    public EventPublisher(StreamBridge streamBridge,
+        ReactiveTracing tracing,
+        @Qualifier("publishScheduler") Scheduler publishScheduler,
+        @Qualifier(RECORD_METADATA_CHANNEL) SubscribableChannel recordMetadataChannel,
+        @Value("${app.product-composite.publish.confirm-mode:${spring.cloud.stream.defaultBinder:none}}") ConfirmMode confirmMode,
+        @Value("${app.product-composite.publish.confirm-timeout:5s}") Duration confirmTimeout) {
+        this.streamBridge = streamBridge;
+        this.tracing = tracing;
+        this.publishScheduler = publishScheduler;
+        this.confirmMode = confirmMode;
+        this.confirmTimeout = confirmTimeout;
+        recordMetadataChannel.subscribe(this::onRecordMetadata);
+    }
+
+    /**
+     * Sends the event when subscribed to. Without confirm, or with confirm mode NONE, the receipt
+     * is SENT as soon as the binder accepted the message; otherwise it is CONFIRMED when the
+     * broker acknowledged it and FAILED when it was nacked, returned or not acknowledged within
+     * the confirm timeout.
+     */
+    public Mono<EventReceipt> publish(String bindingName, Event<?, ?> event, boolean confirm) {
+        return tracing.produce(bindingName, traceHeaders -> {
+            String eventId = event.getEventId().toString();
+            MessageBuilder<Event<?, ?>> message = MessageBuilder.<Event<?, ?>>withPayload(event)
+                .setHeader(EventKeyExtractor.KEY_HEADER, event.getKey())
+                .setHeader(EVENT_ID_HEADER, eventId)
+                .copyHeaders(traceHeaders);
+
+            Mono<EventReceipt> acknowledged = null;
+            if (confirm && confirmMode == ConfirmMode.RABBIT) {
+                CorrelationData correlation = new CorrelationData(eventId);
+                message.setHeader(AmqpHeaders.PUBLISH_CONFIRM_CORRELATION, correlation);
+                acknowledged = Mono.fromFuture(correlation.getFuture().completable())
+                    .map(ack -> EventReceipt.of(event, bindingName,
+                        ack.isAck() && correlation.getReturned() == null ? Status.CONFIRMED : Status.FAILED));
+
+            } else if (confirm && confirmMode == ConfirmMode.KAFKA) {
+                Sinks.One<RecordMetadata> record = Sinks.one();
+                pendingRecords.put(eventId, record);
+                acknowledged = record.asMono()
+                    .map(metadata -> new EventReceipt(event.getEventId(), event.getEventType(), bindingName,
+                        Status.CONFIRMED, metadata.partition(), metadata.offset()))
+                    .doFinally(signal -> pendingRecords.remove(eventId));
+            }
+
+            Mono<EventReceipt> sent = Mono.fromCallable(() -> streamBridge.send(bindingName, message.build()))
+                .subscribeOn(publishScheduler)
+                .map(accepted -> EventReceipt.of(event, bindingName, accepted ? Status.SENT : Status.FAILED));
+            if (acknowledged == null) {
+                return sent;
+            }
+
+            Mono<EventReceipt> confirmed = acknowledged.timeout(confirmTimeout)
+                .onErrorResume(e -> Mono.just(EventReceipt.of(event, bindingName, Status.FAILED)));
+            return sent
+                .flatMap(receipt -> receipt.getStatus() == Status.FAILED ? Mono.just(receipt) : confirmed)
+                .doOnNext(receipt -> {
+                    if (receipt.getStatus() == Status.FAILED) {
+                        log.warn("The {} event {} to {} was not acknowledged", event.getEventType(), eventId, bindingName);
+                    }
+                })
+                .doFinally(signal -> pendingRecords.remove(eventId));
+        });
+    }
+
+    private void onRecordMetadata(Message<?> message) {
+        Object eventId = message.getHeaders().get(EVENT_ID_HEADER);
+        Sinks.One<RecordMetadata> record = eventId == null ? null : pendingRecords.remove(eventId.toString());
+        if (record != null) {
+            record.tryEmitValue(message.getHeaders().get(KafkaHeaders.RECORD_METADATA, RecordMetadata.class));
+        }
+    }
+}
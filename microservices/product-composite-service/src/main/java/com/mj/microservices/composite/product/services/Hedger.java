@@ -0,0 +1,160 @@
+package com.mj.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Hedges the idempotent read calls to one core service.
+ *
+ * The latency of the first attempt of the last windowSize calls, to its first signal or to its
+ * cancellation when the hedge won, is kept in a ring. Once minSamples are recorded a call that
+ * has not answered within their percentile, but at least minDelay, is sent a second time. The
+ * load balanced WebClient picks the instance per request, so the hedge normally goes to another
+ * instance. The first attempt to emit an element or complete wins and the other one is cancelled.
+ * An attempt that fails leaves the call to the other one, so a hedge to a dead instance does not
+ * beat a slow first attempt. The call fails with the error of the first attempt if both fail, or
+ * at once if the first attempt fails before the hedge is sent.
+ *
+ * Hedges are capped by a budget: every call earns budgetPercent / 100 of a hedge, up to
+ * budgetBurst hedges, and a hedge that is not covered by the budget is not sent.
+ */
+public class Hedger {
+
+    private final String name;
+    private final int percentile;
+    private final long minDelayNanos;
+    private final int minSamples;
+    private final int recomputeEvery;
+    private final double budgetRatio;
+    private final double budgetBurst;
+    private final Counter hedgesSent;
+    private final Counter hedgesRejected;
+
+    private final long[] latencies;
+    private int next;
+    private long recorded;
+    private double budget;
+    private volatile Duration delay;
+
+    public Hedger(String name, int percentile, Duration minDelay, int windowSize, int minSamples,
+        int budgetPercent, int budgetBurst, Counter hedgesSent, Counter hedgesRejected) {
+        this.name = name;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.minSamples = Math.min(minSamples, windowSize);
+        this.recomputeEvery = Math.max(1, windowSize / 10);
+        this.budgetRatio = budgetPercent / 100.0;
+        this.budgetBurst = budgetBurst;
+        this.hedgesSent = hedgesSent;
+        this.hedgesRejected = hedgesRejected;
+        this.latencies = new long[windowSize];
+    }
+
+    /**
+     * The call is subscribed to once more for the hedge, so it must be cold and idempotent.
+     */
+    public <T> Mono<T> hedge(Mono<T> call) {
+        return hedge(call.flux()).singleOrEmpty();
+    }
+
+    public <T> Flux<T> hedge(Flux<T> call) {
+        return Flux.defer(() -> {
+            Duration hedgeDelay = earnBudget();
+            Flux<T> primary = timed(call);
+            if (hedgeDelay == null) {
+                return primary;
+            }
+            AtomicReference<Throwable> primaryError = new AtomicReference<>();
+            Sinks.One<Throwable> primaryFailed = Sinks.one();
+            Flux<Signal<T>> first = untilError(primary)
+                .doOnError(error -> {
+                    primaryError.set(error);
+                    primaryFailed.tryEmitValue(error);
+                });
+            Flux<Signal<T>> second = Mono.delay(hedgeDelay)
+                .takeUntilOther(primaryFailed.asMono())
+                .flatMapMany(tick -> tryHedge() ? untilError(call) : Flux.empty());
+            return Flux.firstWithValue(first, second)
+                .onErrorMap(NoSuchElementException.class,
+                    error -> primaryError.get() != null ? primaryError.get() : error)
+                .<T>dematerialize();
+        });
+    }
+
+    /**
+     * @return the current hedge delay, or null until enough calls are recorded
+     */
+    public Duration getDelay() {
+        return delay;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private <T> Flux<T> timed(Flux<T> call) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean();
+            Runnable recordOnce = () -> {
+                if (first.compareAndSet(false, true)) {
+                    record(System.nanoTime() - start);
+                }
+            };
+            return call
+                .doOnEach(signal -> recordOnce.run())
+                .doOnCancel(recordOnce);
+        });
+    }
+
+    /**
+     * The signals of an attempt as elements, so that its completion counts as a value for
+     * firstWithValue, while its error still fails it.
+     */
+    private static <T> Flux<Signal<T>> untilError(Flux<T> attempt) {
+        return attempt.materialize()
+            .handle((signal, sink) -> {
+                if (signal.isOnError()) {
+                    sink.error(signal.getThrowable());
+                } else {
+                    sink.next(signal);
+                }
+            });
+    }
+
+    private synchronized Duration earnBudget() {
+        budget = Math.min(budgetBurst, budget + budgetRatio);
+        return delay;
+    }
+
+    private synchronized boolean tryHedge() {
+        if (budget < 1) {
+            hedgesRejected.increment();
+            return false;
+        }
+        budget -= 1;
+        hedgesSent.increment();
+        return true;
+    }
+
+    private synchronized void record(long latencyNanos) {
+        latencies[next] = latencyNanos;
+        next = (next + 1) % latencies.length;
+        recorded++;
+        if (recorded >= minSamples && recorded % recomputeEvery == 0) {
+            int samples = (int) Math.min(recorded, latencies.length);
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            int index = Math.max(0, (int) Math.ceil(percentile / 100.0 * samples) - 1);
+            delay = Duration.ofNanos(Math.max(minDelayNanos, sorted[index]));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.mj.microservices.composite.product.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * One Hedger per core service, with shared settings. Hedging is off unless enabled, and sent and
+ * rejected hedges are counted as composite.hedge.sent and composite.hedge.rejected, tagged by
+ * target service.
+ */
+@Component
+@Slf4j
+public class Hedgers {
+
+    private final boolean enabled;
+    private final Map<String, Hedger> hedgers;
+
+    public Hedgers(
+        MeterRegistry meterRegistry,
+        @Value("${app.product-composite.hedging.enabled:false}") boolean enabled,
+        @Value("${app.product-composite.hedging.percentile:95}") int percentile,
+        @Value("${app.product-composite.hedging.min-delay:10ms}") Duration minDelay,
+        @Value("${app.product-composite.hedging.window-size:1000}") int windowSize,
+        @Value("${app.product-composite.hedging.min-samples:100}") int minSamples,
+        @Value("${app.product-composite.hedging.budget-percent:10}") int budgetPercent,
+        @Value("${app.product-composite.hedging.budget-burst:10}") int budgetBurst) {
+
+        log.info("Creates hedgers, enabled: {}, percentile: {}, minDelay: {}, budgetPercent: {}%",
+            enabled, percentile, minDelay, budgetPercent);
+
+        this.enabled = enabled;
+        this.hedgers = Map.of(
+            CircuitBreakers.PRODUCT, create(meterRegistry, CircuitBreakers.PRODUCT, percentile, minDelay, windowSize,
+                minSamples, budgetPercent, budgetBurst),
+            CircuitBreakers.RECOMMENDATION, create(meterRegistry, CircuitBreakers.RECOMMENDATION, percentile, minDelay,
+                windowSize, minSamples, budgetPercent, budgetBurst),
+            CircuitBreakers.REVIEW, create(meterRegistry, CircuitBreakers.REVIEW, percentile, minDelay, windowSize,
+                minSamples, budgetPercent, budgetBurst));
+    }
+
+    public <T> Mono<T> hedge(String service, Mono<T> call) {
+        return enabled ? hedgers.get(service).hedge(call) : call;
+    }
+
+    public <T> Flux<T> hedge(String service, Flux<T> call) {
+        return enabled ? hedgers.get(service).hedge(call) : call;
+    }
+
+    private static Hedger create(MeterRegistry meterRegistry, String service, int percentile, Duration minDelay,
+        int windowSize, int minSamples, int budgetPercent, int budgetBurst) {
+        return new Hedger(service, percentile, minDelay, windowSize, minSamples, budgetPercent, budgetBurst,
+            Counter.builder("composite.hedge.sent").tag("target", service).register(meterRegistry),
+            Counter.builder("composite.hedge.rejected").tag("target", service).register(meterRegistry));
+    }
+}
@@ -0,0 +1,20 @@
+package com.mj.microservices.composite.product.services;
+
+import com.mj.api.event.Event;
+
+/**
+ * An event together with the output binding it is published to.
+ *
+ * The trace is the span of the write that produced the event in B3 single format, kept so that
+ * an event relayed from the outbox is published in the trace of its write. Null otherwise.
+ */
+public record OutgoingEvent(String bindingName, Event<Integer, ?> event, String trace) {
+
+    public OutgoingEvent(String bindingName, Event<Integer, ?> event) {
+        this(bindingName, event, null);
+    }
+
+    public OutgoingEvent withTrace(String trace) {
+        return new OutgoingEvent(bindingName, event, trace);
+    }
+}
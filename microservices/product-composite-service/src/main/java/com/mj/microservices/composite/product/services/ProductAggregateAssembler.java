@@ -0,0 +1,82 @@
+package com.mj.microservices.composite.product.services;
+
+import com.mj.api.composite.product.ProductAggregate;
+import com.mj.api.composite.product.RecommendationSummary;
+import com.mj.api.composite.product.ReviewSummary;
+import com.mj.api.composite.product.ServiceAddresses;
+import com.mj.api.core.product.Product;
+import com.mj.api.core.recommendation.Recommendation;
+import com.mj.api.core.review.Review;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assembles product aggregates from the responses of the core services, for
+ * ProductCompositeServiceImpl and ProductAggregateBenchmark.
+ */
+final class ProductAggregateAssembler {
+
+    private ProductAggregateAssembler() {
+    }
+
+    static Map<Integer, ProductAggregate> createProductAggregates(List<Product> products,
+        Map<Integer, Collection<Recommendation>> recommendations,
+        Map<Integer, Collection<Review>> reviews, String serviceAddress) {
+
+        Map<Integer, ProductAggregate> aggregates = new HashMap<>((int) (products.size() / 0.75f) + 1);
+        for (Product product : products) {
+            int productId = product.getProductId();
+            aggregates.put(productId, createProductAggregate(product,
+                recommendations.getOrDefault(productId, Collections.emptyList()),
+                reviews.getOrDefault(productId, Collections.emptyList()),
+                serviceAddress));
+        }
+        return aggregates;
+    }
+
+    /**
+     * Copies the summaries in one pass into lists of the exact size, without streams. Runs for
+     * every aggregate that is not cached.
+     */
+    static ProductAggregate createProductAggregate(Product product,
+        Collection<Recommendation> recommendations, Collection<Review> reviews, String serviceAddress) {
+
+        // 1. Copy summary recommendation info, if available
+        List<RecommendationSummary> recommendationSummaries = null;
+        String recommendationAddress = "";
+        if (recommendations != null) {
+            recommendationSummaries = new ArrayList<>(recommendations.size());
+            for (Recommendation r : recommendations) {
+                recommendationSummaries.add(new RecommendationSummary(r.getRecommendationId(), r.getAuthor(),
+                    r.getRate(), r.getContent()));
+            }
+            if (!recommendations.isEmpty()) {
+                recommendationAddress = recommendations.iterator().next().getServiceAddress();
+            }
+        }
+
+        // 2. Copy summary review info, if available
+        List<ReviewSummary> reviewSummaries = null;
+        String reviewAddress = "";
+        if (reviews != null) {
+            reviewSummaries = new ArrayList<>(reviews.size());
+            for (Review r : reviews) {
+                reviewSummaries.add(new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()));
+            }
+            if (!reviews.isEmpty()) {
+                reviewAddress = reviews.iterator().next().getServiceAddress();
+            }
+        }
+
+        // 3. Create info regarding the involved microservices addresses
+        ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, product.getServiceAddress(),
+            reviewAddress, recommendationAddress);
+
+        return new ProductAggregate(product.getProductId(), product.getName(), product.getWeight(),
+            recommendationSummaries, reviewSummaries, serviceAddresses);
+    }
+}
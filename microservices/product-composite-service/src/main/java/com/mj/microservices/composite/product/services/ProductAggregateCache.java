@@ -0,0 +1,168 @@
+package com.mj.microservices.composite.product.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mj.api.composite.product.ProductAggregate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+/**
+ * Bounded read-through cache of assembled product aggregates.
+ *
+ * Entries are evicted by size and by time since write, and are invalidated whenever a
+ * CREATE or DELETE event is published for the productId. Hit, miss, put and eviction
+ * counters are exposed as cache.* meters on /actuator/metrics.
+ *
+ * Every invalidateAfterWrite moves the write generation of the productId on, and a load only
+ * caches its aggregates if the generations of their productIds did not move while it ran, so a
+ * load that raced a write does not put back what the write invalidated. A published event is
+ * still applied by its consumer later, though, and a load that starts in between caches the old
+ * state, so the staleness after a write is bounded only by the time-to-live.
+ *
+ * Aggregates loaded while a call was degraded to a fallback, see markDegraded, are not cached,
+ * so that missing recommendations or reviews are not served as real data for the time-to-live.
+ */
+@Component
+@Slf4j
+public class ProductAggregateCache {
+
+    private static final String CACHE_NAME = "productAggregates";
+    private static final String DEGRADED = ProductAggregateCache.class.getName() + ".degraded";
+
+    private final Cache<Integer, ProductAggregate> cache;
+    private final Cache<Integer, Long> writeGenerations;
+    private final AtomicLong lastWriteGeneration = new AtomicLong();
+    private final boolean enabled;
+
+    public ProductAggregateCache(
+        MeterRegistry meterRegistry,
+        @Value("${app.product-composite.cache.enabled:true}") boolean enabled,
+        @Value("${app.product-composite.cache.maximum-size:10000}") long maximumSize,
+        @Value("${app.product-composite.cache.time-to-live:60s}") Duration timeToLive) {
+
+        log.info("Creates a product aggregate cache, enabled: {}, maximumSize: {}, timeToLive: {}",
+            enabled, maximumSize, timeToLive);
+
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive)
+            .recordStats()
+            .build();
+        // A load that outlives the time-to-live has timed out long before, so older generations are not needed
+        this.writeGenerations = Caffeine.newBuilder()
+            .expireAfterWrite(timeToLive)
+            .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public Mono<ProductAggregate> get(int productId, Mono<ProductAggregate> loader) {
+        if (!enabled) {
+            return loader;
+        }
+
+        return Mono.defer(() -> {
+            ProductAggregate cached = cache.getIfPresent(productId);
+            if (cached != null) {
+                log.debug("Product aggregate cache hit for productId: {}", productId);
+                return Mono.just(cached);
+            }
+            long generation = writeGeneration(productId);
+            AtomicBoolean degraded = new AtomicBoolean();
+            return loader
+                .doOnNext(aggregate -> {
+                    if (!degraded.get()) {
+                        putUnlessWritten(productId, aggregate, generation);
+                    }
+                })
+                .contextWrite(context -> context.put(DEGRADED, degraded));
+        });
+    }
+
+    public Map<Integer, ProductAggregate> getAllPresent(Iterable<Integer> productIds) {
+        return enabled ? cache.getAllPresent(productIds) : Map.of();
+    }
+
+    /**
+     * Caches the aggregates of the loader of productIds, unless it was degraded, except those of
+     * products written while it ran.
+     */
+    public Mono<Map<Integer, ProductAggregate>> putAll(Collection<Integer> productIds,
+        Mono<Map<Integer, ProductAggregate>> loader) {
+        if (!enabled) {
+            return loader;
+        }
+
+        return Mono.defer(() -> {
+            Map<Integer, Long> generations = new HashMap<>();
+            productIds.forEach(productId -> generations.put(productId, writeGeneration(productId)));
+            AtomicBoolean degraded = new AtomicBoolean();
+            return loader
+                .doOnNext(aggregates -> {
+                    if (!degraded.get()) {
+                        aggregates.forEach((productId, aggregate) -> {
+                            Long generation = generations.get(productId);
+                            if (generation != null) {
+                                putUnlessWritten(productId, aggregate, generation);
+                            }
+                        });
+                    }
+                })
+                .contextWrite(context -> context.put(DEGRADED, degraded));
+        });
+    }
+
+    /**
+     * Marks the load that runs in the context as degraded, so that its aggregates are not cached.
+     */
+    public static void markDegraded(ContextView context) {
+        AtomicBoolean degraded = context.getOrDefault(DEGRADED, null);
+        if (degraded != null) {
+            degraded.set(true);
+        }
+    }
+
+    public void invalidate(int productId) {
+        log.debug("Invalidates product aggregate cache entry for productId: {}", productId);
+        cache.invalidate(productId);
+    }
+
+    /**
+     * Invalidates the entry of a written product and moves its write generation on, so that loads
+     * that are running do not cache it again.
+     */
+    public void invalidateAfterWrite(int productId) {
+        if (enabled) {
+            writeGenerations.put(productId, lastWriteGeneration.incrementAndGet());
+        }
+        invalidate(productId);
+    }
+
+    /**
+     * The generation is checked after the put, since a write that moves it on before the check is
+     * undone here, and one that moves it on later invalidates the entry itself.
+     */
+    private void putUnlessWritten(int productId, ProductAggregate aggregate, long generation) {
+        cache.put(productId, aggregate);
+        if (writeGeneration(productId) != generation) {
+            cache.asMap().remove(productId, aggregate);
+        }
+    }
+
+    private long writeGeneration(int productId) {
+        Long generation = writeGenerations.getIfPresent(productId);
+        return generation != null ? generation : 0;
+    }
+}
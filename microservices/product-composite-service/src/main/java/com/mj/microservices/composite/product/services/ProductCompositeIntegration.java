@@ -1,5 +1,10 @@
 package com.mj.microservices.composite.product.services;
 
+import static com.mj.microservices.composite.product.services.CircuitBreakers.PRODUCT;
+import static com.mj.microservices.composite.product.services.CircuitBreakers.RECOMMENDATION;
+import static com.mj.microservices.composite.product.services.CircuitBreakers.REVIEW;
+import static com.mj.util.metrics.ReactiveMetrics.DOWNSTREAM_CALLS;
+
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mj.api.core.product.Product;
 import com.mj.api.core.product.ProductService;
@@ -9,16 +14,27 @@ import com.mj.api.core.review.Review;
 import com.mj.api.core.review.ReviewService;
 import com.mj.api.event.Event;
 import com.mj.api.event.Event.Type;
+import com.mj.api.event.EventReceipt;
+import com.mj.microservices.composite.product.loadbalancer.InstanceStats;
+import com.mj.microservices.composite.product.outbox.Outbox;
 import com.mj.util.exceptions.InvalidInputException;
 import com.mj.util.exceptions.NotFoundException;
 import com.mj.util.http.HttpErrorInfo;
+import com.mj.util.metrics.ReactiveMetrics;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.actuate.health.Health;
-import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.annotation.Output;
-import org.springframework.messaging.MessageChannel;
-import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -26,47 +42,59 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Component
-@EnableBinding(ProductCompositeIntegration.MessageSources.class)
 @Slf4j
 public class ProductCompositeIntegration implements ProductService, RecommendationService,
     ReviewService {
 
     private final WebClient.Builder webClientBuilder;
-    private WebClient webClient;
+    private final Map<String, WebClient> webClients = new ConcurrentHashMap<>();
     private final ObjectMapper mapper;
     private final String productServiceUrl = "http://product";
     private final String recommendationServiceUrl = "http://recommendation";
     private final String reviewServiceUrl = "http://review";
-    private MessageSources messageSources;
-
-    public interface MessageSources {
-
-        String OUTPUT_PRODUCTS = "output-products";
-        String OUTPUT_RECOMMENDATIONS = "output-recommendations";
-        String OUTPUT_REVIEWS = "output-reviews";
+    private final EventPublisher eventPublisher;
+    private final Outbox outbox;
+    private final ProductAggregateCache aggregateCache;
+    private final CircuitBreakers circuitBreakers;
+    private final Hedgers hedgers;
+    private final InstanceStats instanceStats;
+    private final ServiceHttpClients httpClients;
+    private final ReactiveMetrics metrics;
 
-        @Output(OUTPUT_PRODUCTS)
-        MessageChannel outputProducts();
+    public static final String OUTPUT_PRODUCTS = "output-products";
+    public static final String OUTPUT_RECOMMENDATIONS = "output-recommendations";
+    public static final String OUTPUT_REVIEWS = "output-reviews";
 
-        @Output(OUTPUT_RECOMMENDATIONS)
-        MessageChannel outputRecommendations();
+    private static final String BROKER = "broker";
 
-        @Output(OUTPUT_REVIEWS)
-        MessageChannel outputReviews();
-    }
+    private static final Duration HEALTH_TIMEOUT = Duration.ofSeconds(2);
 
     public ProductCompositeIntegration(
         WebClient.Builder webClientBuilder,
         ObjectMapper mapper,
-        MessageSources messageSources) {
+        EventPublisher eventPublisher,
+        Optional<Outbox> outbox,
+        ProductAggregateCache aggregateCache,
+        CircuitBreakers circuitBreakers,
+        Hedgers hedgers,
+        InstanceStats instanceStats,
+        ServiceHttpClients httpClients,
+        ReactiveMetrics metrics) {
 
         this.webClientBuilder = webClientBuilder;
         this.mapper = mapper;
-        this.messageSources = messageSources;
+        this.eventPublisher = eventPublisher;
+        this.outbox = outbox.orElse(null);
+        this.aggregateCache = aggregateCache;
+        this.circuitBreakers = circuitBreakers;
+        this.hedgers = hedgers;
+        this.instanceStats = instanceStats;
+        this.httpClients = httpClients;
+        this.metrics = metrics;
     }
 
     @Override
-    public Product createProduct(Product body) {
+    public Mono<Product> createProduct(Product body) {
 //        try {
 //            String url = productServiceUrl;
 //            log.debug("Will post a new product to Url: {}", url);
@@ -80,9 +108,12 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 //            throw handleHttpClientException(e);
 //        }
 
-        messageSources.outputProducts()
-            .send(MessageBuilder.withPayload(new Event(Type.CREATE, body.getProductId(), body)).build());
-        return body;
+        return publish(OUTPUT_PRODUCTS, new Event<>(Type.CREATE, body.getProductId(), body)).thenReturn(body);
+    }
+
+    @Override
+    public Flux<Product> createProducts(List<Product> body) {
+        return publishBatches(OUTPUT_PRODUCTS, body, Product::getProductId).thenMany(Flux.fromIterable(body));
     }
 
     @Override
@@ -116,16 +147,29 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         String url = productServiceUrl + "/product/" + productId;
         log.debug("Will call the getProduct API call on URL: {}", url);
 
-        return getWebClient().get()
-            .uri(url)
-            .retrieve()
-            .bodyToMono(Product.class)
-            .log()
-            .onErrorMap(WebClientResponseException.class, e -> handleException(e));
+        return call(PRODUCT, "getProduct", getWebClient(PRODUCT).get()
+                .uri(url)
+                .retrieve()
+                .bodyToMono(Product.class)
+                .onErrorMap(WebClientResponseException.class, e -> handleException(e)))
+            .log();
+    }
+
+    @Override
+    public Flux<Product> getProducts(List<Integer> productIds) {
+        String url = productServiceUrl + "/product?productIds=" + toQueryValue(productIds);
+        log.debug("Will call the getProducts API call on URL: {}", url);
+
+        return call(PRODUCT, "getProducts", getWebClient(PRODUCT).get()
+                .uri(url)
+                .retrieve()
+                .bodyToFlux(Product.class)
+                .onErrorMap(WebClientResponseException.class, e -> handleException(e)))
+            .log(null, Level.FINE);
     }
 
     @Override
-    public void deleteProduct(int productId) {
+    public Mono<Void> deleteProduct(int productId) {
 //        try {
 //            String url = productServiceUrl + "/" + productId;
 //            log.debug("Will call the deleteProduct API on URL: {}", url);
@@ -136,12 +180,11 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 //            throw handleHttpClientException(ex);
 //        }
 
-        messageSources.outputProducts()
-            .send(MessageBuilder.withPayload(new Event(Type.DELETE, productId, null)).build());
+        return publish(OUTPUT_PRODUCTS, new Event<>(Type.DELETE, productId, null)).then();
     }
 
     @Override
-    public Recommendation createRecommendation(Recommendation body) {
+    public Mono<Recommendation> createRecommendation(Recommendation body) {
 //        try {
 //            String url = recommendationServiceUrl;
 //            log.debug("Will post a new recommendation to URL: {}", url);
@@ -155,9 +198,8 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
 //            throw handleHttpClientException(ex);
 //        }
 
-        messageSources.outputRecommendations()
-            .send(MessageBuilder.withPayload(new Event(Type.CREATE, body.getProductId(), body)).build());
-        return body;
+        return publish(OUTPUT_RECOMMENDATIONS, new Event<>(Type.CREATE, body.getProductId(), body))
+            .thenReturn(body);
     }
 
 //    @Override
@@ -174,16 +216,37 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         String url = recommendationServiceUrl + "/recommendation?productId=" + productId;
         log.debug("Will call the getRecommendations API on URL: {}", url);
 
-        return getWebClient().get()
-            .uri(url)
-            .retrieve()
-            .bodyToFlux(Recommendation.class)
-            .log()
-            .onErrorResume(e -> Flux.empty());
+        return call(RECOMMENDATION, "getRecommendations", getWebClient(RECOMMENDATION).get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Recommendation.class))
+            .log(null, Level.FINE)
+            .onErrorResume(error -> degraded(RECOMMENDATION, error));
+    }
+
+    @Override
+    public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+        String url = recommendationServiceUrl + "/recommendation?productIds=" + toQueryValue(productIds);
+        log.debug("Will call the getRecommendationsForProducts API on URL: {}", url);
+
+        return call(RECOMMENDATION, "getRecommendationsForProducts", getWebClient(RECOMMENDATION).get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Recommendation.class))
+            .log(null, Level.FINE)
+            .onErrorResume(error -> degraded(RECOMMENDATION, error));
     }
 
     @Override
-    public void deleteRecommendations(int productId) {
+    public Flux<Recommendation> createRecommendations(List<Recommendation> body) {
+        return publishBatches(OUTPUT_RECOMMENDATIONS, body, Recommendation::getProductId)
+            .thenMany(Flux.fromIterable(body));
+    }
+
+    @Override
+    public Mono<Void> deleteRecommendations(int productId) {
         /*try {
             String url = recommendationServiceUrl + "?productId=" + productId;
             log.debug("Will call the deleteRecommendations API on URL: {}", url);
@@ -193,12 +256,11 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         } catch (HttpClientErrorException ex) {
             throw handleHttpClientException(ex);
         }*/
-        messageSources.outputRecommendations()
-            .send(MessageBuilder.withPayload(new Event(Type.DELETE, productId, null)).build());
+        return publish(OUTPUT_RECOMMENDATIONS, new Event<>(Type.DELETE, productId, null)).then();
     }
 
     @Override
-    public Review createReview(Review body) {
+    public Mono<Review> createReview(Review body) {
 
         /*try {
             String url = reviewServiceUrl;
@@ -213,11 +275,12 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
             throw handleHttpClientException(ex);
         }*/
 
-        messageSources.outputReviews()
-            .send(MessageBuilder.withPayload(
-                new Event(Type.CREATE, body.getProductId(), body)).build());
+        return publish(OUTPUT_REVIEWS, new Event<>(Type.CREATE, body.getProductId(), body)).thenReturn(body);
+    }
 
-        return body;
+    @Override
+    public Flux<Review> createReviews(List<Review> body) {
+        return publishBatches(OUTPUT_REVIEWS, body, Review::getProductId).thenMany(Flux.fromIterable(body));
     }
 
     /*@Override
@@ -234,16 +297,31 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
         String url = reviewServiceUrl + "/review?productId=" + productId;
         log.debug("Will call the getReviews API on URL: {}", url);
 
-        return getWebClient().get()
-            .uri(url)
-            .retrieve()
-            .bodyToFlux(Review.class)
-            .log()
-            .onErrorResume(error -> Flux.empty());
+        return call(REVIEW, "getReviews", getWebClient(REVIEW).get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Review.class))
+            .log(null, Level.FINE)
+            .onErrorResume(error -> degraded(REVIEW, error));
     }
 
     @Override
-    public void deleteReviews(int productId) {
+    public Flux<Review> getReviewsForProducts(List<Integer> productIds) {
+        String url = reviewServiceUrl + "/review?productIds=" + toQueryValue(productIds);
+        log.debug("Will call the getReviewsForProducts API on URL: {}", url);
+
+        return call(REVIEW, "getReviewsForProducts", getWebClient(REVIEW).get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(Review.class))
+            .log(null, Level.FINE)
+            .onErrorResume(error -> degraded(REVIEW, error));
+    }
+
+    @Override
+    public Mono<Void> deleteReviews(int productId) {
         /*try {
             String url = reviewServiceUrl + "?productId=" + productId;
             log.debug("Will call the deleteReviews API on URL: {}", url);
@@ -254,39 +332,126 @@ public class ProductCompositeIntegration implements ProductService, Recommendati
             throw handleHttpClientException(ex);
         }*/
 
-        messageSources.outputReviews()
-            .send(MessageBuilder.withPayload(new Event(Type.DELETE, productId, null)).build());
+        return publish(OUTPUT_REVIEWS, new Event<>(Type.DELETE, productId, null)).then();
+    }
+
+    /**
+     * Publishes the events of one write when the returned Mono is subscribed to. With the outbox
+     * enabled they are stored as one outbox entry and relayed later, otherwise they are sent
+     * concurrently. The cached aggregates of the products are invalidated once that is done, see
+     * ProductAggregateCache.invalidateAfterWrite. The outbox invalidates them once more when its
+     * relay has published the events.
+     */
+    public Mono<List<EventReceipt>> publish(List<OutgoingEvent> events, boolean confirm) {
+        Mono<List<EventReceipt>> receipts = outbox != null
+            ? outbox.append(events, confirm)
+            : Flux.fromIterable(events)
+                .flatMapSequential(e -> eventPublisher.publish(e.bindingName(), e.event(), confirm))
+                .collectList();
+
+        return metrics.time(DOWNSTREAM_CALLS, receipts, "target", BROKER, "operation", "publish")
+            .doOnSubscribe(s -> log.debug("Publishes {} events", events.size()))
+            .doOnSuccess(r -> events.forEach(e -> aggregateCache.invalidateAfterWrite(e.event().getKey())));
+    }
+
+    private Mono<EventReceipt> publish(String bindingName, Event<Integer, ?> event) {
+        return publish(List.of(new OutgoingEvent(bindingName, event)), false).map(receipts -> receipts.get(0));
+    }
+
+    /**
+     * Publishes one CREATE_BATCH event per productId of the entities as one write, so that each
+     * entity is keyed by its own product and the aggregate of each product is invalidated.
+     */
+    private <T> Mono<List<EventReceipt>> publishBatches(String bindingName, List<T> entities,
+        ToIntFunction<T> productId) {
+        if (entities.isEmpty()) {
+            throw new InvalidInputException("No entities specified");
+        }
+
+        Map<Integer, List<T>> batches = new LinkedHashMap<>();
+        for (T entity : entities) {
+            batches.computeIfAbsent(productId.applyAsInt(entity), id -> new ArrayList<>()).add(entity);
+        }
+        List<OutgoingEvent> events = new ArrayList<>(batches.size());
+        batches.forEach((id, batch) -> events.add(new OutgoingEvent(bindingName, Event.createBatch(id, batch))));
+        return publish(events, false);
+    }
+
+    /**
+     * A call to a core service behind its circuit breaker, hedged if enabled and timed as a
+     * downstream call including the time spent waiting for a hedge.
+     */
+    private <T> Mono<T> call(String service, String operation, Mono<T> request) {
+        return metrics.time(DOWNSTREAM_CALLS, circuitBreakers.get(service).protect(hedgers.hedge(service, request)),
+            "target", service, "operation", operation);
+    }
+
+    private <T> Flux<T> call(String service, String operation, Flux<T> request) {
+        return metrics.time(DOWNSTREAM_CALLS, circuitBreakers.get(service).protect(hedgers.hedge(service, request)),
+            "target", service, "operation", operation);
+    }
+
+    /**
+     * Responses that fail, time out or are rejected by the circuit breaker are degraded to an
+     * empty list, so that the composite can still be returned. The load is marked as degraded so
+     * that the composite is not cached.
+     */
+    private <T> Flux<T> degraded(String service, Throwable error) {
+        return Flux.deferContextual(context -> {
+            log.warn("Returns no {}s, the {} service call failed: {}", service, service, error.toString());
+            ProductAggregateCache.markDegraded(context);
+            return Flux.empty();
+        });
     }
 
-    private Mono<Health> getHealth(String url) {
-        url += "/actuator/health";
-        log.debug("Will call the Health API on URL: {}", url);
-        return getWebClient().get()
-            .uri(url)
+    /**
+     * The health of a core service, with the state of its circuit breaker as a detail. An open
+     * circuit breaker reports the service as down without calling it.
+     */
+    private Mono<Health> getHealth(String url, CircuitBreaker circuitBreaker) {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        if (state == CircuitBreaker.State.OPEN) {
+            return Mono.just(new Health.Builder().down().withDetail("circuitBreaker", state).build());
+        }
+
+        String healthUrl = url + "/actuator/health";
+        log.debug("Will call the Health API on URL: {}", healthUrl);
+        return getWebClient(circuitBreaker.getName()).get()
+            .uri(healthUrl)
             .retrieve()
             .bodyToMono(String.class)
-            .map(s -> new Health.Builder().up().build())
-            .onErrorResume(e -> Mono.just(new Health.Builder().down(e).build()))
+            .timeout(HEALTH_TIMEOUT)
+            .map(s -> new Health.Builder().up().withDetail("circuitBreaker", state).build())
+            .onErrorResume(e -> Mono.just(new Health.Builder().down(e).withDetail("circuitBreaker", state).build()))
             .log();
     }
 
     public Mono<Health> getProductHealth() {
-        return getHealth(productServiceUrl);
+        return getHealth(productServiceUrl, circuitBreakers.get(PRODUCT));
     }
 
     public Mono<Health> getRecommendationHealth() {
-        return getHealth(recommendationServiceUrl);
+        return getHealth(recommendationServiceUrl, circuitBreakers.get(RECOMMENDATION));
     }
 
     public Mono<Health> getReviewHealth() {
-        return getHealth(reviewServiceUrl);
+        return getHealth(reviewServiceUrl, circuitBreakers.get(REVIEW));
     }
 
-    private WebClient getWebClient() {
-        if (webClient == null) {
-            webClient = webClientBuilder.build();
-        }
-        return webClient;
+    private String toQueryValue(List<Integer> productIds) {
+        return productIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    /**
+     * A WebClient per core service, using the connection pool of the service. The InstanceStats
+     * filter is added after the load balancer filter, so it records the latency of the instance
+     * the load balancer picked.
+     */
+    private WebClient getWebClient(String service) {
+        return webClients.computeIfAbsent(service, s -> webClientBuilder.clone()
+            .clientConnector(httpClients.get(s))
+            .filter(instanceStats)
+            .build());
     }
 
     private Throwable handleException(Throwable e) {
@@ -1,64 +1,112 @@
 package com.mj.microservices.composite.product.services;
 
+import static com.mj.microservices.composite.product.services.ProductAggregateAssembler.createProductAggregate;
+import static com.mj.microservices.composite.product.services.ProductAggregateAssembler.createProductAggregates;
+import static com.mj.microservices.composite.product.services.ProductCompositeIntegration.OUTPUT_PRODUCTS;
+import static com.mj.microservices.composite.product.services.ProductCompositeIntegration.OUTPUT_RECOMMENDATIONS;
+import static com.mj.microservices.composite.product.services.ProductCompositeIntegration.OUTPUT_REVIEWS;
+
 import com.mj.api.composite.product.ProductAggregate;
 import com.mj.api.composite.product.ProductCompositeService;
 import com.mj.api.composite.product.RecommendationSummary;
 import com.mj.api.composite.product.ReviewSummary;
-import com.mj.api.composite.product.ServiceAddresses;
+import com.mj.api.composite.product.WriteReceipt;
 import com.mj.api.core.product.Product;
 import com.mj.api.core.recommendation.Recommendation;
 import com.mj.api.core.review.Review;
+import com.mj.api.event.Event;
+import com.mj.api.event.Event.Type;
+import com.mj.util.exceptions.InvalidInputException;
 import com.mj.util.http.ServiceUtil;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
 @Slf4j
 public class ProductCompositeServiceImpl implements ProductCompositeService {
 
-    private final ServiceUtil serviceUtil;
+    private final String serviceAddress;
     private ProductCompositeIntegration integration;
+    private final ProductAggregateCache aggregateCache;
+    private final int batchEventMinSize;
+    private final int batchEventMaxSize;
+    private final int maxProductIds;
 
     public ProductCompositeServiceImpl(ServiceUtil serviceUtil,
-        ProductCompositeIntegration integration) {
-        this.serviceUtil = serviceUtil;
+        ProductCompositeIntegration integration,
+        ProductAggregateCache aggregateCache,
+        @Value("${app.product-composite.batch-events.min-size:2}") int batchEventMinSize,
+        @Value("${app.product-composite.batch-events.max-size:500}") int batchEventMaxSize,
+        @Value("${app.product-composite.max-product-ids:100}") int maxProductIds) {
+        this.serviceAddress = serviceUtil.getServiceAddress();
         this.integration = integration;
+        this.aggregateCache = aggregateCache;
+        this.batchEventMinSize = batchEventMinSize;
+        this.batchEventMaxSize = batchEventMaxSize;
+        this.maxProductIds = maxProductIds;
     }
 
+    /**
+     * Publishes the product, recommendation and review events as one write. With confirm the
+     * receipt is only returned when the events are durable, i.e. acknowledged by the broker or
+     * flushed to the outbox.
+     */
     @Override
-    public void createCompositeProduct(ProductAggregate body) {
-        try {
-            log.debug("createCompositeProduct: creates a new composite entity for productId: {}",
-                body.getProductId());
-
-            Product product = new Product(body.getProductId(), body.getName(), body.getWeight(),
-                null);
-            integration.createProduct(product);
-
-            if (body.getRecommendations() != null) {
-                body.getRecommendations().forEach(r -> {
-                    Recommendation recommendation = new Recommendation(body.getProductId(),
-                        r.getRecommendationId(), r.getAuthor(), r.getRate(), r.getContent(), null);
-                    integration.createRecommendation(recommendation);
-                });
-            }
-
-            if (body.getReviews() != null) {
-                body.getReviews().forEach(r -> {
-                    Review review = new Review(body.getProductId(), r.getReviewId(), r.getAuthor(),
-                        r.getSubject(), r.getContent(), null);
-                    integration.createReview(review);
-                });
-            }
-
-            log.debug("createCompositeProduct: composite entities created for productId: {}",
-                body.getProductId());
-        } catch (RuntimeException e) {
-            log.warn("createCompositeProduct failed", e);
-            throw e;
+    public Mono<WriteReceipt> createCompositeProduct(ProductAggregate body, boolean confirm) {
+        int productId = body.getProductId();
+        log.debug("createCompositeProduct: creates a new composite entity for productId: {}", productId);
+
+        List<OutgoingEvent> events = new ArrayList<>();
+        events.add(new OutgoingEvent(OUTPUT_PRODUCTS, new Event<>(Type.CREATE, productId,
+            new Product(productId, body.getName(), body.getWeight(), null))));
+
+        if (body.getRecommendations() != null) {
+            List<Recommendation> recommendations = body.getRecommendations().stream()
+                .map(r -> new Recommendation(productId, r.getRecommendationId(), r.getAuthor(),
+                    r.getRate(), r.getContent(), null))
+                .collect(Collectors.toList());
+            addCreateEvents(events, OUTPUT_RECOMMENDATIONS, productId, recommendations);
+        }
+
+        if (body.getReviews() != null) {
+            List<Review> reviews = body.getReviews().stream()
+                .map(r -> new Review(productId, r.getReviewId(), r.getAuthor(), r.getSubject(),
+                    r.getContent(), null))
+                .collect(Collectors.toList());
+            addCreateEvents(events, OUTPUT_REVIEWS, productId, reviews);
+        }
+
+        return integration.publish(events, confirm)
+            .map(receipts -> new WriteReceipt(productId, receipts))
+            .doOnNext(receipt -> log.debug("createCompositeProduct: {} events published for productId: {}",
+                receipt.getEvents().size(), productId))
+            .doOnError(ex -> log.warn("createCompositeProduct failed: {}", ex.toString()));
+    }
+
+    /**
+     * Adds one CREATE event per entity for small lists and CREATE_BATCH events of at most
+     * batchEventMaxSize entities otherwise, so that the core services can bulk insert them.
+     */
+    private <T> void addCreateEvents(List<OutgoingEvent> events, String bindingName, int productId,
+        List<T> entities) {
+        if (entities.size() < batchEventMinSize) {
+            entities.forEach(entity -> events.add(new OutgoingEvent(bindingName,
+                new Event<>(Type.CREATE, productId, entity))));
+            return;
+        }
+
+        for (int from = 0; from < entities.size(); from += batchEventMaxSize) {
+            events.add(new OutgoingEvent(bindingName, Event.createBatch(productId,
+                entities.subList(from, Math.min(from + batchEventMaxSize, entities.size())))));
         }
     }
 
@@ -71,64 +119,84 @@ public class ProductCompositeServiceImpl implements ProductCompositeService {
         return createProductAggregate(product, recommendations, reviews,
             serviceUtil.getServiceAddress());*/
 
-        return Mono.zip(
-                values -> createProductAggregate(
-                    (Product) values[0],
-                    (List<Recommendation>) values[1],
-                    (List<Review>) values[2],
-                    serviceUtil.getServiceAddress()),
+        Mono<ProductAggregate> aggregate = Mono.defer(() -> Mono.zip(
                 integration.getProduct(productId),
                 integration.getRecommendations(productId).collectList(),
                 integration.getReviews(productId).collectList())
+            .map(values -> createProductAggregate(values.getT1(), values.getT2(), values.getT3(), serviceAddress)));
+
+        return aggregateCache.get(productId, aggregate)
             .doOnError(ex -> log.warn("getCompositeProduct failed: {}", ex.toString()))
             .log();
     }
 
     @Override
-    public void deleteCompositeProduct(int productId) {
-        log.debug("deleteCompositeProduct: Deletes a product aggregate for productId: {}", productId);
-
-        integration.deleteProduct(productId);
-
-        integration.deleteRecommendations(productId);
-
-        integration.deleteReviews(productId);
+    public Flux<ProductAggregate> getCompositeProducts(List<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            throw new InvalidInputException("No product ids specified");
+        }
+        if (productIds.size() > maxProductIds) {
+            throw new InvalidInputException("At most " + maxProductIds + " product ids can be specified, got "
+                + productIds.size());
+        }
+        for (int productId : productIds) {
+            if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+        }
 
-        log.debug("getCompositeProduct: aggregate entities deleted for productId: {}", productId);
+        List<Integer> distinctIds = productIds.stream().distinct().collect(Collectors.toList());
+        Map<Integer, ProductAggregate> cached = aggregateCache.getAllPresent(distinctIds);
+        List<Integer> missingIds = distinctIds.stream()
+            .filter(productId -> !cached.containsKey(productId))
+            .collect(Collectors.toList());
+
+        log.debug("getCompositeProducts: {} of {} product aggregates found in cache",
+            cached.size(), distinctIds.size());
+
+        Mono<Map<Integer, ProductAggregate>> loaded = missingIds.isEmpty()
+            ? Mono.just(Collections.emptyMap())
+            : aggregateCache.putAll(missingIds, Mono.zip(
+                    integration.getProducts(missingIds).collectList(),
+                    integration.getRecommendationsForProducts(missingIds)
+                        .collectMultimap(Recommendation::getProductId),
+                    integration.getReviewsForProducts(missingIds)
+                        .collectMultimap(Review::getProductId))
+                .map(values -> createProductAggregates(values.getT1(), values.getT2(), values.getT3(), serviceAddress)));
+
+        return loaded
+            .flatMapMany(aggregates -> Flux.fromIterable(distinctIds)
+                .mapNotNull(productId -> cached.containsKey(productId) ? cached.get(productId)
+                    : aggregates.get(productId)))
+            .doOnError(ex -> log.warn("getCompositeProducts failed: {}", ex.toString()))
+            .log(null, Level.FINE);
     }
 
-    private ProductAggregate createProductAggregate(Product product,
-        List<Recommendation> recommendations, List<Review> reviews, String serviceAddress) {
-
-        // 1. Setup product info
-        int productId = product.getProductId();
-        String name = product.getName();
-        int weight = product.getWeight();
+    @Override
+    public Flux<RecommendationSummary> getCompositeProductRecommendations(int productId) {
+        return integration.getRecommendations(productId)
+            .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(),
+                r.getRate(), r.getContent()))
+            .doOnError(ex -> log.warn("getCompositeProductRecommendations failed: {}", ex.toString()))
+            .log(null, Level.FINE);
+    }
 
-        // 2. Copy summary recommendation info, if available
-        List<RecommendationSummary> recommendationSummaries = (recommendations == null) ? null :
-            recommendations.stream()
-                .map(r -> new RecommendationSummary(r.getRecommendationId(), r.getAuthor(),
-                    r.getRate(), r.getContent()))
-                .collect(Collectors.toList());
+    @Override
+    public Flux<ReviewSummary> getCompositeProductReviews(int productId) {
+        return integration.getReviews(productId)
+            .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()))
+            .doOnError(ex -> log.warn("getCompositeProductReviews failed: {}", ex.toString()))
+            .log(null, Level.FINE);
+    }
 
-        // 3. Copy summary review info, if available
-        List<ReviewSummary> reviewSummaries = (reviews == null) ? null :
-            reviews.stream()
-                .map(r -> new ReviewSummary(r.getReviewId(), r.getAuthor(), r.getSubject(), r.getContent()))
-                .collect(Collectors.toList());
+    @Override
+    public Mono<Void> deleteCompositeProduct(int productId) {
+        log.debug("deleteCompositeProduct: Deletes a product aggregate for productId: {}", productId);
 
-        // 4. Create info regarding the involved microservices addresses
-        String productAddress = product.getServiceAddress();
-        String reviewAddress =
-            (reviews != null && reviews.size() > 0) ? reviews.get(0).getServiceAddress() : "";
-        String recommendationAddress =
-            (recommendations != null && recommendations.size() > 0) ? recommendations.get(0)
-                .getServiceAddress() : "";
-        ServiceAddresses serviceAddresses = new ServiceAddresses(serviceAddress, productAddress,
-            reviewAddress, recommendationAddress);
-
-        return new ProductAggregate(productId, name, weight, recommendationSummaries,
-            reviewSummaries, serviceAddresses);
+        return integration.publish(List.of(
+                new OutgoingEvent(OUTPUT_PRODUCTS, new Event<>(Type.DELETE, productId, null)),
+                new OutgoingEvent(OUTPUT_RECOMMENDATIONS, new Event<>(Type.DELETE, productId, null)),
+                new OutgoingEvent(OUTPUT_REVIEWS, new Event<>(Type.DELETE, productId, null))), false)
+            .then()
+            .doOnSuccess(v -> log.debug("deleteCompositeProduct: aggregate entities deleted for productId: {}",
+                productId));
     }
 }
@@ -0,0 +1,25 @@
+package com.mj.microservices.composite.product.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.messaging.SubscribableChannel;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+@Configuration
+public class PublishConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler publishScheduler(
+        @Value("${app.product-composite.publish.thread-pool-size:10}") int threadPoolSize,
+        @Value("${app.product-composite.publish.task-queue-size:1000}") int taskQueueSize) {
+        return Schedulers.newBoundedElastic(threadPoolSize, taskQueueSize, "publish");
+    }
+
+    @Bean(EventPublisher.RECORD_METADATA_CHANNEL)
+    public SubscribableChannel eventRecordMetadata() {
+        return new DirectChannel();
+    }
+}
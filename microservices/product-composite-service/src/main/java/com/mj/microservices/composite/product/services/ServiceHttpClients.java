@@ -0,0 +1,93 @@
+package com.mj.microservices.composite.product.services;
+
+import io.netty.channel.ChannelOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * One Reactor Netty connection pool per core service, so that a slow service can't take the
+ * connections of the others.
+ *
+ * Connections are kept alive and reused until they were idle for maxIdleTime or open for
+ * maxLifeTime, and are evicted in the background. Responses are asked for compressed, and with
+ * h2c the services are called over HTTP/2 without TLS, multiplexing the calls over fewer
+ * connections. The pool metrics are published as reactor.netty.connection.provider.* meters
+ * tagged with the service as name.
+ *
+ * The max-connections of a service can be set as app.product-composite.http-client.{service}.max-connections.
+ */
+@Component
+@Slf4j
+public class ServiceHttpClients implements DisposableBean {
+
+    private static final String PREFIX = "app.product-composite.http-client.";
+
+    private final Map<String, ConnectionProvider> connectionProviders;
+    private final Map<String, ClientHttpConnector> connectors;
+
+    public ServiceHttpClients(
+        Environment environment,
+        @Value("${app.product-composite.http-client.max-connections:100}") int maxConnections,
+        @Value("${app.product-composite.http-client.pending-acquire-max-count:1000}") int pendingAcquireMaxCount,
+        @Value("${app.product-composite.http-client.pending-acquire-timeout:5s}") Duration pendingAcquireTimeout,
+        @Value("${app.product-composite.http-client.max-idle-time:30s}") Duration maxIdleTime,
+        @Value("${app.product-composite.http-client.max-life-time:5m}") Duration maxLifeTime,
+        @Value("${app.product-composite.http-client.evict-interval:30s}") Duration evictInterval,
+        @Value("${app.product-composite.http-client.connect-timeout:1s}") Duration connectTimeout,
+        @Value("${app.product-composite.http-client.compression:true}") boolean compression,
+        @Value("${app.product-composite.http-client.h2c:false}") boolean h2c) {
+
+        List<String> services = List.of(CircuitBreakers.PRODUCT, CircuitBreakers.RECOMMENDATION, CircuitBreakers.REVIEW);
+
+        connectionProviders = services.stream().collect(Collectors.toMap(Function.identity(), service -> {
+            int serviceMaxConnections = environment.getProperty(PREFIX + service + ".max-connections", Integer.class,
+                maxConnections);
+            log.info("Creates a connection pool for {}, maxConnections: {}, maxIdleTime: {}, h2c: {}, compression: {}",
+                service, serviceMaxConnections, maxIdleTime, h2c, compression);
+
+            return ConnectionProvider.builder(service)
+                .maxConnections(serviceMaxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(evictInterval)
+                .metrics(true)
+                .build();
+        }));
+
+        connectors = services.stream().collect(Collectors.toMap(Function.identity(), service -> {
+            HttpClient httpClient = HttpClient.create(connectionProviders.get(service))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .compress(compression);
+            if (h2c) {
+                httpClient = httpClient.protocol(HttpProtocol.H2C);
+            }
+            return new ReactorClientHttpConnector(httpClient);
+        }));
+    }
+
+    public ClientHttpConnector get(String service) {
+        return connectors.get(service);
+    }
+
+    @Override
+    public void destroy() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
+    }
+}
@@ -1,16 +1,23 @@
 package com.mj.microservices.composite.product.services;
 
+import com.mj.microservices.composite.product.loadbalancer.LatencyAwareLoadBalancerConfiguration;
+import com.mj.util.tracing.TracingExchangeFilter;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.reactive.function.client.WebClient;
 
 @Configuration
+@LoadBalancerClients(defaultConfiguration = LatencyAwareLoadBalancerConfiguration.class)
 public class WebClientConfig {
 
+    /**
+     * The tracing filter is added ahead of the load balancer filter, see TracingExchangeFilter.
+     */
     @Bean
     @LoadBalanced
-    public WebClient.Builder loadBalancedWebClientBuilder() {
-        return WebClient.builder();
+    public WebClient.Builder loadBalancedWebClientBuilder(TracingExchangeFilter tracingExchangeFilter) {
+        return WebClient.builder().filter(tracingExchangeFilter);
     }
 }
@@ -31,6 +31,7 @@ public class IsSameEvent extends TypeSafeMatcher<String> {
 
         log.trace("Convert the following json string to a map: {}", eventAsJson);
         Map mapEvent = convertJsonStringToMap(eventAsJson);
+        mapEvent.remove("eventId");
         mapEvent.remove("eventCreatedAt");
 
         Map mapExpectedEvent = getMapWithoutCreatedAt(expectedEvent);
@@ -61,6 +62,7 @@ public class IsSameEvent extends TypeSafeMatcher<String> {
 
     private Map getMapWithoutCreatedAt(Event event) {
         Map mapEvent = convertObjectToMap(event);
+        mapEvent.remove("eventId");
         mapEvent.remove("eventCreatedAt");
         return mapEvent;
     }
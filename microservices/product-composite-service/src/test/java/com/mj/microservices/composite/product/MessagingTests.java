@@ -2,36 +2,53 @@ package com.mj.microservices.composite.product;
 
 import static com.mj.microservices.composite.product.IsSameEvent.sameEventExceptCreatedAt;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.is;
-import static org.springframework.cloud.stream.test.matcher.MessageQueueMatcher.receivesPayloadThat;
 
 import com.mj.api.composite.product.ProductAggregate;
 import com.mj.api.composite.product.RecommendationSummary;
 import com.mj.api.composite.product.ReviewSummary;
+import com.mj.api.composite.product.WriteReceipt;
 import com.mj.api.core.product.Product;
 import com.mj.api.core.recommendation.Recommendation;
 import com.mj.api.core.review.Review;
 import com.mj.api.event.Event;
 import com.mj.api.event.Event.Type;
+import com.mj.api.event.EventReceipt;
+import com.mj.api.event.EventReceipt.Status;
+import com.mj.microservices.composite.product.services.EventPublisher;
 import com.mj.microservices.composite.product.services.ProductCompositeIntegration;
+import com.mj.util.exceptions.InvalidInputException;
+import com.mj.util.tracing.InMemorySpanReporter;
+import com.mj.util.tracing.ReactiveTracing;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.concurrent.BlockingQueue;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.hamcrest.MatcherAssert;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
-import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
 import org.springframework.messaging.Message;
-import org.springframework.messaging.MessageChannel;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
+import zipkin2.Span;
 
 @SpringBootTest(
     webEnvironment = WebEnvironment.RANDOM_PORT,
-    properties = { "eureka.client.enabled=false" })
+    properties = {
+        "eureka.client.enabled=false",
+        "app.product-composite.publish.confirm-mode=none",
+        "app.tracing.exporter=memory"})
+@Import(TestChannelBinderConfiguration.class)
 //@AutoConfigureWebTestClient
 public class MessagingTests {
 
@@ -43,20 +60,21 @@ public class MessagingTests {
     private WebTestClient client;
 
     @Autowired
-    private ProductCompositeIntegration.MessageSources channels;
+    private OutputDestination target;
 
     @Autowired
-    private MessageCollector collector;
+    private InMemorySpanReporter spans;
 
-    BlockingQueue<Message<?>> queueProducts = null;
-    BlockingQueue<Message<?>> queueRecommendations = null;
-    BlockingQueue<Message<?>> queueReviews = null;
+    @Autowired
+    private ProductCompositeIntegration integration;
+
+    List<String> queueProducts = null;
+    List<String> queueRecommendations = null;
+    List<String> queueReviews = null;
 
     @BeforeEach
     void setup() {
-        queueProducts = getQueue(channels.outputProducts());
-        queueRecommendations = getQueue(channels.outputRecommendations());
-        queueReviews = getQueue(channels.outputReviews());
+        target.clear();
     }
 
     @Test
@@ -74,8 +92,7 @@ public class MessagingTests {
                 composite.getName(),
                 composite.getWeight(),
                 null));
-        MatcherAssert.assertThat(queueProducts, is(receivesPayloadThat(
-            sameEventExceptCreatedAt(expectedEvent))));
+        MatcherAssert.assertThat(queueProducts.get(0), is(sameEventExceptCreatedAt(expectedEvent)));
 
         assertThat(queueRecommendations.size()).isEqualTo(0);
         assertThat(queueReviews.size()).isEqualTo(0);
@@ -94,26 +111,123 @@ public class MessagingTests {
         Event<Integer, Product> expectedProductEvent = new Event(Type.CREATE, composite.getProductId(),
             new Product(composite.getProductId(), composite.getName(), composite.getWeight(),
                 null));
-        MatcherAssert.assertThat(
-            queueProducts,
-            receivesPayloadThat(sameEventExceptCreatedAt(expectedProductEvent)));
+        MatcherAssert.assertThat(queueProducts.get(0), is(sameEventExceptCreatedAt(expectedProductEvent)));
 
         assertThat(queueRecommendations.size()).isEqualTo(1);
         RecommendationSummary rec = composite.getRecommendations().get(0);
         Event expectedRecommendationEvent = new Event(Type.CREATE, composite.getProductId(),
             new Recommendation(composite.getProductId(), rec.getRecommendationId(), rec.getAuthor(),
                 rec.getRate(), rec.getContent(), null));
-        MatcherAssert.assertThat(queueRecommendations,
-            receivesPayloadThat(sameEventExceptCreatedAt(expectedRecommendationEvent)));
+        MatcherAssert.assertThat(queueRecommendations.get(0), is(sameEventExceptCreatedAt(expectedRecommendationEvent)));
 
         assertThat(queueReviews.size()).isEqualTo(1);
         ReviewSummary rev = composite.getReviews().get(0);
         Event expectedReviewEvent = new Event(Type.CREATE, composite.getProductId(),
             new Review(composite.getProductId(), rev.getReviewId(), rev.getAuthor(),
                 rev.getSubject(), rev.getContent(), null));
-        MatcherAssert.assertThat(queueReviews,
-            receivesPayloadThat(
-                sameEventExceptCreatedAt(expectedReviewEvent)));
+        MatcherAssert.assertThat(queueReviews.get(0), is(sameEventExceptCreatedAt(expectedReviewEvent)));
+    }
+
+    @Test
+    public void createCompositeProductWithBatches() {
+        ProductAggregate composite = new ProductAggregate(1, "name", 1,
+            List.of(new RecommendationSummary(1, "a", 1, "c"), new RecommendationSummary(2, "a", 2, "c")),
+            List.of(new ReviewSummary(1, "a", "s", "c"), new ReviewSummary(2, "a", "s", "c")),
+            null);
+
+        postAndVerifyProduct(composite, HttpStatus.OK);
+
+        assertThat(queueProducts.size()).isEqualTo(1);
+
+        assertThat(queueRecommendations.size()).isEqualTo(1);
+        Event<Integer, Recommendation> expectedRecommendationEvent = Event.createBatch(composite.getProductId(),
+            composite.getRecommendations().stream()
+                .map(r -> new Recommendation(composite.getProductId(), r.getRecommendationId(), r.getAuthor(),
+                    r.getRate(), r.getContent(), null))
+                .collect(Collectors.toList()));
+        MatcherAssert.assertThat(queueRecommendations.get(0), is(sameEventExceptCreatedAt(expectedRecommendationEvent)));
+
+        assertThat(queueReviews.size()).isEqualTo(1);
+        Event<Integer, Review> expectedReviewEvent = Event.createBatch(composite.getProductId(),
+            composite.getReviews().stream()
+                .map(r -> new Review(composite.getProductId(), r.getReviewId(), r.getAuthor(),
+                    r.getSubject(), r.getContent(), null))
+                .collect(Collectors.toList()));
+        MatcherAssert.assertThat(queueReviews.get(0), is(sameEventExceptCreatedAt(expectedReviewEvent)));
+    }
+
+    @Test
+    public void createCompositeProductReturnsReceipt() {
+        ProductAggregate composite = new ProductAggregate(1, "name", 1,
+            Collections.singletonList(new RecommendationSummary(1, "a", 1, "c")), null, null);
+
+        WriteReceipt receipt = client.post()
+            .uri("/product-composite?confirm=true")
+            .body(Mono.just(composite), ProductAggregate.class)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody(WriteReceipt.class)
+            .returnResult().getResponseBody();
+
+        assertThat(receipt.getProductId()).isEqualTo(1);
+        assertThat(receipt.getEvents())
+            .extracting(EventReceipt::getBinding, EventReceipt::getEventType, EventReceipt::getStatus)
+            .containsExactly(
+                tuple("output-products", Type.CREATE, Status.SENT),
+                tuple("output-recommendations", Type.CREATE, Status.SENT));
+        assertThat(receipt.getEvents())
+            .extracting(event -> event.getEventId().toString())
+            .containsExactly(
+                target.receive(0, "products").getHeaders().get(EventPublisher.EVENT_ID_HEADER, String.class),
+                target.receive(0, "recommendations").getHeaders().get(EventPublisher.EVENT_ID_HEADER, String.class));
+    }
+
+    @Test
+    public void createCompositeProductContinuesTraceOfRequest() throws InterruptedException {
+        String traceId = "463ac35c9f6413ad48485a3953bb6124";
+        ProductAggregate composite = new ProductAggregate(1, "name", 1, null, null, null);
+
+        client.post()
+            .uri("/product-composite")
+            .header(ReactiveTracing.B3_HEADER, traceId + "-a2fb4a1d1a96d312-1")
+            .body(Mono.just(composite), ProductAggregate.class)
+            .exchange()
+            .expectStatus().isOk();
+
+        String b3 = target.receive(0, "products").getHeaders().get(ReactiveTracing.B3_HEADER, String.class);
+        assertThat(b3).startsWith(traceId + "-");
+
+        // The server span ends after the response is written
+        for (int i = 0; i < 50 && spans.getTrace(traceId).size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        List<Span> trace = spans.getTrace(traceId);
+        Span server = trace.stream().filter(span -> span.kind() == Span.Kind.SERVER).findFirst().orElseThrow();
+        Span producer = trace.stream().filter(span -> span.kind() == Span.Kind.PRODUCER).findFirst().orElseThrow();
+        assertThat(server.parentId()).isEqualTo("a2fb4a1d1a96d312");
+        assertThat(server.name()).isEqualTo("post /product-composite");
+        assertThat(producer.parentId()).isEqualTo(server.id());
+        assertThat(b3).startsWith(traceId + "-" + producer.id() + "-");
+    }
+
+    @Test
+    public void createReviewsPublishesOneBatchPerProduct() {
+        Review review1 = new Review(1, 1, "a", "s", "c", null);
+        Review review2 = new Review(2, 1, "a", "s", "c", null);
+        Review review3 = new Review(1, 2, "a", "s", "c", null);
+
+        integration.createReviews(List.of(review1, review2, review3)).blockLast();
+        readQueues();
+
+        // The batches of different products are sent concurrently
+        MatcherAssert.assertThat(queueReviews, containsInAnyOrder(
+            sameEventExceptCreatedAt(Event.createBatch(1, List.of(review1, review3))),
+            sameEventExceptCreatedAt(Event.createBatch(2, List.of(review2)))));
+    }
+
+    @Test
+    public void createReviewsRejectsEmptyList() {
+        assertThrows(InvalidInputException.class, () -> integration.createReviews(List.of()));
     }
 
     @Test
@@ -122,18 +236,15 @@ public class MessagingTests {
 
         assertThat(queueProducts.size()).isEqualTo(1);
         Event<Integer, Product> expectedProductEvent = new Event(Type.DELETE, 1, null);
-        MatcherAssert.assertThat(queueProducts,
-            is(receivesPayloadThat(sameEventExceptCreatedAt(expectedProductEvent))));
+        MatcherAssert.assertThat(queueProducts.get(0), is(sameEventExceptCreatedAt(expectedProductEvent)));
 
         assertThat(queueRecommendations.size()).isEqualTo(1);
         Event<Integer, Product> expectedRecommendationEvent = new Event(Type.DELETE, 1, null);
-        MatcherAssert.assertThat(queueRecommendations,
-            is(receivesPayloadThat(sameEventExceptCreatedAt(expectedRecommendationEvent))));
+        MatcherAssert.assertThat(queueRecommendations.get(0), is(sameEventExceptCreatedAt(expectedRecommendationEvent)));
 
         assertThat(queueReviews.size()).isEqualTo(1);
         Event<Integer, Product> expectedReviewEvent = new Event(Type.DELETE, 1, null);
-        MatcherAssert.assertThat(queueReviews,
-            is(receivesPayloadThat(sameEventExceptCreatedAt(expectedReviewEvent))));
+        MatcherAssert.assertThat(queueReviews.get(0), is(sameEventExceptCreatedAt(expectedReviewEvent)));
     }
 
     private void postAndVerifyProduct(ProductAggregate composite, HttpStatus status) {
@@ -142,6 +253,7 @@ public class MessagingTests {
             .body(Mono.just(composite), ProductAggregate.class)
             .exchange()
             .expectStatus().isEqualTo(status);
+        readQueues();
     }
 
     private void deleteAndVerifyProduct(int productId, HttpStatus status) {
@@ -149,9 +261,21 @@ public class MessagingTests {
             .uri("/product-composite/" + productId)
             .exchange()
             .expectStatus().isEqualTo(status);
+        readQueues();
+    }
+
+    private void readQueues() {
+        queueProducts = getQueue("products");
+        queueRecommendations = getQueue("recommendations");
+        queueReviews = getQueue("reviews");
     }
 
-    private BlockingQueue<Message<?>> getQueue(MessageChannel messageChannel) {
-        return collector.forChannel(messageChannel);
+    private List<String> getQueue(String destination) {
+        List<String> queue = new ArrayList<>();
+        Message<byte[]> message;
+        while ((message = target.receive(0, destination)) != null) {
+            queue.add(new String(message.getPayload()));
+        }
+        return queue;
     }
 }
@@ -1,6 +1,11 @@
 package com.mj.microservices.composite.product;
 
 import static java.util.Collections.singletonList;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.mj.api.composite.product.ProductAggregate;
@@ -9,10 +14,15 @@ import com.mj.api.composite.product.ReviewSummary;
 import com.mj.api.core.product.Product;
 import com.mj.api.core.recommendation.Recommendation;
 import com.mj.api.core.review.Review;
+import com.mj.api.event.EventReceipt;
+import com.mj.api.event.EventReceipt.Status;
+import com.mj.microservices.composite.product.services.OutgoingEvent;
 import com.mj.microservices.composite.product.services.ProductCompositeIntegration;
 import com.mj.util.exceptions.InvalidInputException;
 import com.mj.util.exceptions.NotFoundException;
 import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -25,16 +35,20 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 @SpringBootTest(
 	webEnvironment = WebEnvironment.RANDOM_PORT,
-	properties = { "eureka.client.enabled=false" })
+	properties = { "eureka.client.enabled=false", "app.product-composite.max-product-ids=3" })
 //@Disabled
 class ProductCompositeServiceApplicationTests {
 
 	private static final int PRODUCT_ID_OK = 1;
 	private static final int PRODUCT_ID_NOT_FOUND = 2;
 	private static final int PRODUCT_ID_INVALID = 3;
+	private static final int PRODUCT_ID_CACHED = 4;
+	private static final int PRODUCT_ID_BATCH_1 = 5;
+	private static final int PRODUCT_ID_BATCH_2 = 6;
 
 	@Autowired
 	private WebTestClient client;
@@ -53,6 +67,28 @@ class ProductCompositeServiceApplicationTests {
 			.thenReturn(Flux.fromIterable(singletonList(
 				new Review(PRODUCT_ID_OK, 1, "author", "subject", "content", "mock address"))));
 
+		when(compositeIntegration.getProduct(PRODUCT_ID_CACHED))
+			.thenReturn(Mono.just(new Product(PRODUCT_ID_CACHED, "name", 1, "mock-address")));
+		when(compositeIntegration.getRecommendations(PRODUCT_ID_CACHED)).thenReturn(Flux.empty());
+		when(compositeIntegration.getReviews(PRODUCT_ID_CACHED)).thenReturn(Flux.empty());
+
+		when(compositeIntegration.getProducts(List.of(PRODUCT_ID_BATCH_2, PRODUCT_ID_BATCH_1)))
+			.thenReturn(Flux.just(
+				new Product(PRODUCT_ID_BATCH_1, "name", 1, "mock-address"),
+				new Product(PRODUCT_ID_BATCH_2, "name", 1, "mock-address")));
+		when(compositeIntegration.getRecommendationsForProducts(anyList()))
+			.thenReturn(Flux.just(
+				new Recommendation(PRODUCT_ID_BATCH_1, 1, "author", 1, "content", "mock address"),
+				new Recommendation(PRODUCT_ID_BATCH_1, 2, "author", 1, "content", "mock address")));
+		when(compositeIntegration.getReviewsForProducts(anyList()))
+			.thenReturn(Flux.just(
+				new Review(PRODUCT_ID_BATCH_2, 1, "author", "subject", "content", "mock address")));
+
+		when(compositeIntegration.publish(anyList(), anyBoolean())).thenAnswer(invocation -> Mono.just(
+			invocation.<List<OutgoingEvent>>getArgument(0).stream()
+				.map(e -> EventReceipt.of(e.event(), e.bindingName(), Status.SENT))
+				.collect(Collectors.toList())));
+
 		when(compositeIntegration.getProduct(PRODUCT_ID_NOT_FOUND))
 			.thenThrow(new NotFoundException("NOT FOUND : " + PRODUCT_ID_NOT_FOUND));
 		when(compositeIntegration.getProduct(PRODUCT_ID_INVALID))
@@ -71,7 +107,9 @@ class ProductCompositeServiceApplicationTests {
 			singletonList(new RecommendationSummary(1, "a", 1, "c")),
 			singletonList(new ReviewSummary(1, "a", "s", "c")),
 			null);
-		postAndVerifyProduct(compositeProduct, HttpStatus.OK);
+		postAndVerifyProduct(compositeProduct, HttpStatus.OK)
+			.jsonPath("$.productId").isEqualTo(1)
+			.jsonPath("$.events.length()").isEqualTo(3);
 	}
 
 	@Test
@@ -102,6 +140,90 @@ class ProductCompositeServiceApplicationTests {
 			.jsonPath("$.reviews.length()").isEqualTo(1);
 	}
 
+	@Test
+	public void getProductFromCache() {
+		getAndVerifyProduct(PRODUCT_ID_CACHED);
+		getAndVerifyProduct(PRODUCT_ID_CACHED);
+
+		verify(compositeIntegration, times(1)).getProduct(PRODUCT_ID_CACHED);
+		verify(compositeIntegration, times(1)).getRecommendations(PRODUCT_ID_CACHED);
+		verify(compositeIntegration, times(1)).getReviews(PRODUCT_ID_CACHED);
+	}
+
+	@Test
+	public void getProducts() {
+		client.get()
+			.uri("/product-composite?ids=" + PRODUCT_ID_BATCH_2 + "," + PRODUCT_ID_BATCH_1 + "," + PRODUCT_ID_BATCH_2)
+			.accept(MediaType.APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().contentType(MediaType.APPLICATION_JSON)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].productId").isEqualTo(PRODUCT_ID_BATCH_2)
+			.jsonPath("$[0].recommendations.length()").isEqualTo(0)
+			.jsonPath("$[0].reviews.length()").isEqualTo(1)
+			.jsonPath("$[1].productId").isEqualTo(PRODUCT_ID_BATCH_1)
+			.jsonPath("$[1].recommendations.length()").isEqualTo(2)
+			.jsonPath("$[1].reviews.length()").isEqualTo(0);
+
+		verify(compositeIntegration, times(1)).getProducts(anyList());
+	}
+
+	@Test
+	public void getProductsTooMany() {
+		client.get()
+			.uri("/product-composite?ids=1,2,3,4")
+			.accept(MediaType.APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+			.expectBody()
+			.jsonPath("$.message").isEqualTo("At most 3 product ids can be specified, got 4");
+
+		verify(compositeIntegration, never()).getProducts(anyList());
+	}
+
+	@Test
+	public void getProductsInvalidId() {
+		client.get()
+			.uri("/product-composite?ids=1,-1")
+			.accept(MediaType.APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY)
+			.expectBody()
+			.jsonPath("$.message").isEqualTo("Invalid productId: -1");
+
+		verify(compositeIntegration, never()).getProducts(anyList());
+	}
+
+	@Test
+	public void getProductReviewsAsStream() {
+		StepVerifier.create(client.get()
+				.uri("/product-composite/" + PRODUCT_ID_OK + "/reviews")
+				.accept(MediaType.APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+				.returnResult(ReviewSummary.class)
+				.getResponseBody())
+			.expectNextMatches(review -> review.getReviewId() == 1)
+			.verifyComplete();
+	}
+
+	@Test
+	public void getProductRecommendationsAsEventStream() {
+		StepVerifier.create(client.get()
+				.uri("/product-composite/" + PRODUCT_ID_OK + "/recommendations")
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+				.returnResult(RecommendationSummary.class)
+				.getResponseBody())
+			.expectNextMatches(recommendation -> recommendation.getRecommendationId() == 1)
+			.verifyComplete();
+	}
+
 	@Test
 	public void getProductNotFound() {
 		client.get()
@@ -128,12 +250,23 @@ class ProductCompositeServiceApplicationTests {
 			.jsonPath("$.message").isEqualTo("INVALID : " + PRODUCT_ID_INVALID);
 	}
 
-	private void postAndVerifyProduct(ProductAggregate compositeProduct, HttpStatus status) {
-		client.post()
+	private void getAndVerifyProduct(int productId) {
+		client.get()
+			.uri("/product-composite/" + productId)
+			.accept(MediaType.APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody()
+			.jsonPath("$.productId").isEqualTo(productId);
+	}
+
+	private WebTestClient.BodyContentSpec postAndVerifyProduct(ProductAggregate compositeProduct, HttpStatus status) {
+		return client.post()
 			.uri("/product-composite")
 			.body(Mono.just(compositeProduct), ProductAggregate.class)
 			.exchange()
-			.expectStatus().isEqualTo(status);
+			.expectStatus().isEqualTo(status)
+			.expectBody();
 	}
 
 	private void deleteAndVerifyProduct(int productId, HttpStatus status) {
@@ -0,0 +1,80 @@
+package com.mj.microservices.composite.product.loadbalancer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+class LatencyAwareLoadBalancerTest {
+
+    private final InstanceStats instanceStats = new InstanceStats(Duration.ofSeconds(10), Duration.ofSeconds(1));
+    private final LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(null, "product", instanceStats);
+
+    private final ServiceInstance fast = new DefaultServiceInstance("product-1", "product", "fast", 8080, false);
+    private final ServiceInstance slow = new DefaultServiceInstance("product-2", "product", "slow", 8080, false);
+
+    @Test
+    void prefersInstanceWithLowerLatency() {
+        call(fast, Duration.ofMillis(1));
+        call(slow, Duration.ofMillis(50));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(loadBalancer.choose(List.of(fast, slow)).getServer()).isEqualTo(fast);
+        }
+    }
+
+    @Test
+    void prefersInstanceWithFewerRequestsInFlight() {
+        call(fast, Duration.ofMillis(1));
+        call(slow, Duration.ofMillis(1));
+        instanceStats.filter(request(fast), request -> Mono.never()).subscribe();
+        instanceStats.filter(request(fast), request -> Mono.never()).subscribe();
+
+        assertThat(loadBalancer.choose(List.of(fast, slow)).getServer()).isEqualTo(slow);
+    }
+
+    @Test
+    void failedCallsArePenalized() {
+        call(fast, Duration.ofMillis(1));
+        instanceStats.filter(request(slow), request -> Mono.error(new IllegalStateException("refused")))
+            .onErrorResume(e -> Mono.empty())
+            .block();
+
+        assertThat(instanceStats.getCost(slow)).isGreaterThan(Duration.ofMillis(500).toNanos());
+        assertThat(loadBalancer.choose(List.of(fast, slow)).getServer()).isEqualTo(fast);
+    }
+
+    @Test
+    void serverErrorsArePenalized() {
+        instanceStats.filter(request(slow),
+            request -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build())).block();
+        call(fast, Duration.ofMillis(1));
+
+        assertThat(instanceStats.getCost(slow)).isGreaterThan(Duration.ofMillis(500).toNanos());
+        assertThat(loadBalancer.choose(List.of(fast, slow)).getServer()).isEqualTo(fast);
+    }
+
+    @Test
+    void noInstances() {
+        assertThat(loadBalancer.choose(List.of()).hasServer()).isFalse();
+    }
+
+    private void call(ServiceInstance instance, Duration latency) {
+        instanceStats.filter(request(instance),
+            request -> Mono.delay(latency).thenReturn(ClientResponse.create(HttpStatus.OK).build())).block();
+    }
+
+    private static ClientRequest request(ServiceInstance instance) {
+        return ClientRequest.create(HttpMethod.GET,
+            URI.create("http://" + instance.getHost() + ":" + instance.getPort() + "/product/1")).build();
+    }
+}
@@ -0,0 +1,148 @@
+package com.mj.microservices.composite.product.outbox;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.mj.api.core.product.Product;
+import com.mj.api.core.review.Review;
+import com.mj.api.event.Event;
+import com.mj.api.event.Event.Type;
+import com.mj.api.event.EventReceipt;
+import com.mj.api.event.EventReceipt.Status;
+import com.mj.microservices.composite.product.services.EventPublisher;
+import com.mj.microservices.composite.product.services.OutgoingEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+class OutboxTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsEntriesInAppendOrderAcrossSegments() throws IOException {
+        OutboxStore store = new OutboxStore(directory, SEGMENT_SIZE);
+        for (int productId = 1; productId <= 20; productId++) {
+            store.append(List.of(productEvent(productId), reviewEvent(productId)), false);
+        }
+
+        List<OutboxStore.Entry> entries = store.read(100);
+
+        assertThat(entries).hasSize(20);
+        assertThat(entries).extracting(entry -> entry.events().get(0).event().getKey())
+            .containsExactlyElementsOf(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20));
+        assertThat(entries.get(0).events().get(1).bindingName()).isEqualTo("output-reviews");
+        assertThat(store.getPendingEntries()).isEqualTo(20);
+        assertThat(Files.list(directory).filter(f -> f.toString().endsWith(".segment")).count()).isGreaterThan(1);
+
+        store.commit(entries.get(9).nextPosition(), 10);
+
+        assertThat(store.read(100)).hasSize(10);
+        assertThat(store.getPendingEntries()).isEqualTo(10);
+    }
+
+    @Test
+    void recoversPendingEntriesAndIgnoresTornEntry() throws IOException {
+        OutboxStore store = new OutboxStore(directory, SEGMENT_SIZE);
+        OutgoingEvent committed = productEvent(1);
+        OutgoingEvent pending = productEvent(2);
+        store.append(List.of(committed), false);
+        store.append(List.of(pending), false);
+        store.commit(store.read(1).get(0).nextPosition(), 1);
+        long tornPosition = store.read(1).get(0).nextPosition();
+        store.close();
+
+        // A length without a matching body, as left by a crash in the middle of an append
+        try (FileChannel segment = FileChannel.open(directory.resolve(String.format("%020d.segment", 0)),
+            StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 100), tornPosition);
+        }
+
+        OutboxStore reopened = new OutboxStore(directory, SEGMENT_SIZE);
+        List<OutboxStore.Entry> entries = reopened.read(100);
+
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).events().get(0).event().getEventId()).isEqualTo(pending.event().getEventId());
+        assertThat(reopened.getPendingEntries()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsTraceOfEachEvent() throws IOException {
+        String trace = "463ac35c9f6413ad48485a3953bb6124-a2fb4a1d1a96d312-1";
+        OutboxStore store = new OutboxStore(directory, SEGMENT_SIZE);
+        store.append(List.of(productEvent(1).withTrace(trace), reviewEvent(1)), false);
+        store.close();
+
+        List<OutgoingEvent> events = new OutboxStore(directory, SEGMENT_SIZE).read(1).get(0).events();
+
+        assertThat(events).extracting(OutgoingEvent::trace).containsExactly(trace, null);
+    }
+
+    @Test
+    void relayPublishesStoredEventsAndCommits() throws IOException {
+        List<Object> published = new CopyOnWriteArrayList<>();
+        List<Object> relayed = new CopyOnWriteArrayList<>();
+        EventPublisher eventPublisher = mock(EventPublisher.class);
+        when(eventPublisher.publish(anyString(), any(), eq(true))).thenAnswer(invocation -> {
+            Event<?, ?> event = invocation.getArgument(1);
+            published.add(event.getKey());
+            return Mono.just(EventReceipt.of(event, invocation.getArgument(0), Status.CONFIRMED));
+        });
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        OutboxStore store = new OutboxStore(directory, SEGMENT_SIZE);
+        Outbox outbox = new Outbox(store, eventPublisher, Schedulers.boundedElastic(), meterRegistry,
+            Duration.ofMillis(10), 2, 4, events -> events.forEach(e -> relayed.add(e.event().getKey())));
+
+        List<EventReceipt> receipts = outbox.append(List.of(productEvent(1), reviewEvent(1)), true).block();
+        outbox.append(List.of(productEvent(2)), false).block();
+        outbox.append(List.of(productEvent(3)), false).block();
+
+        assertThat(receipts).extracting(EventReceipt::getStatus).containsOnly(Status.STORED);
+        for (int i = 0; i < 50 && store.getPendingEntries() > 0; i++) {
+            sleep(100);
+        }
+        outbox.dispose();
+
+        assertThat(store.getPendingEntries()).isZero();
+        assertThat(published).containsExactlyInAnyOrder(1, 1, 2, 3);
+        assertThat(relayed).containsExactlyInAnyOrder(1, 1, 2, 3);
+        assertThat(meterRegistry.get("composite.outbox.relayed.events").counter().count()).isEqualTo(4);
+        assertThat(meterRegistry.get("composite.outbox.lag.entries").gauge().value()).isZero();
+    }
+
+    private static OutgoingEvent productEvent(int productId) {
+        return new OutgoingEvent("output-products",
+            new Event<>(Type.CREATE, productId, new Product(productId, "name " + productId, 1, null)));
+    }
+
+    private static OutgoingEvent reviewEvent(int productId) {
+        return new OutgoingEvent("output-reviews",
+            new Event<>(Type.CREATE, productId, new Review(productId, 1, "a", "s", "c", null)));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
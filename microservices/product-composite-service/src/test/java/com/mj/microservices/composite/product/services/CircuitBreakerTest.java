@@ -0,0 +1,116 @@
+package com.mj.microservices.composite.product.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.mj.microservices.composite.product.services.CircuitBreaker.State;
+import com.mj.util.exceptions.NotFoundException;
+import com.mj.util.exceptions.ServiceUnavailableException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker("product", Duration.ofMillis(100), 4, 4, 50,
+        Duration.ofSeconds(10), now::get);
+
+    @Test
+    void opensOnFailuresAndClosesAfterSuccessfulProbe() {
+        call(Mono.just("ok"));
+        call(Mono.error(new IOException("connection refused")));
+        call(Mono.just("ok"));
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+
+        call(Mono.error(new IOException("connection refused")));
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+
+        StepVerifier.create(circuitBreaker.protect(Mono.just("not called")))
+            .expectError(ServiceUnavailableException.class)
+            .verify();
+
+        now.addAndGet(10_000);
+        assertThat(circuitBreaker.getState()).isEqualTo(State.HALF_OPEN);
+        call(Mono.just("probe"));
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    @Test
+    void failedProbeOpensAgain() {
+        for (int i = 0; i < 4; i++) {
+            call(Mono.error(new IOException("connection refused")));
+        }
+        now.addAndGet(10_000);
+
+        call(Mono.error(new IOException("connection refused")));
+
+        assertThat(circuitBreaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void stragglerDoesNotMoveHalfOpenBreaker() {
+        // The straggler must not time out while the test runs
+        CircuitBreaker patientBreaker = new CircuitBreaker("product", Duration.ofSeconds(10), 4, 4, 50,
+            Duration.ofSeconds(10), now::get);
+        Sinks.One<String> straggler = Sinks.one();
+        CompletableFuture<String> stragglerResult = patientBreaker.protect(straggler.asMono()).toFuture();
+        for (int i = 0; i < 4; i++) {
+            call(patientBreaker, Mono.error(new IOException("connection refused")));
+        }
+        now.addAndGet(10_000);
+        assertThat(patientBreaker.getState()).isEqualTo(State.HALF_OPEN);
+
+        straggler.tryEmitValue("late");
+        assertThat(stragglerResult.join()).isEqualTo("late");
+        assertThat(patientBreaker.getState()).isEqualTo(State.HALF_OPEN);
+
+        call(patientBreaker, Mono.error(new IOException("connection refused")));
+        assertThat(patientBreaker.getState()).isEqualTo(State.OPEN);
+    }
+
+    @Test
+    void failingStragglerDoesNotExtendOpenWait() {
+        // The straggler must not time out while the test runs, and a single failure opens the breaker
+        CircuitBreaker patientBreaker = new CircuitBreaker("product", Duration.ofSeconds(10), 4, 1, 50,
+            Duration.ofSeconds(10), now::get);
+        Sinks.One<String> straggler = Sinks.one();
+        CompletableFuture<String> stragglerResult = patientBreaker.protect(straggler.asMono()).toFuture();
+        call(patientBreaker, Mono.error(new IOException("connection refused")));
+        assertThat(patientBreaker.getState()).isEqualTo(State.OPEN);
+        now.addAndGet(5_000);
+
+        straggler.tryEmitError(new IOException("connection reset"));
+        assertThat(stragglerResult).isCompletedExceptionally();
+        assertThat(patientBreaker.getState()).isEqualTo(State.OPEN);
+
+        now.addAndGet(5_000);
+        assertThat(patientBreaker.getState()).isEqualTo(State.HALF_OPEN);
+    }
+
+    @Test
+    void timesOutSlowCallsButNotNotFound() {
+        StepVerifier.create(circuitBreaker.protect(Flux.never()))
+            .expectError(ServiceUnavailableException.class)
+            .verify(Duration.ofSeconds(1));
+
+        for (int i = 0; i < 4; i++) {
+            call(Mono.error(new NotFoundException("not found")));
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(State.CLOSED);
+    }
+
+    private void call(Mono<String> call) {
+        call(circuitBreaker, call);
+    }
+
+    private static void call(CircuitBreaker circuitBreaker, Mono<String> call) {
+        circuitBreaker.protect(call).onErrorResume(e -> Mono.empty()).block();
+    }
+}
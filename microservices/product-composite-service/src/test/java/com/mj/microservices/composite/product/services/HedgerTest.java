@@ -0,0 +1,125 @@
+package com.mj.microservices.composite.product.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class HedgerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void hedgesSlowCallAndTakesFirstResponse() {
+        Hedger hedger = hedger(100);
+        train(hedger);
+        assertThat(hedger.getDelay()).isEqualTo(Duration.ofMillis(10));
+
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicInteger cancelled = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> attempts.incrementAndGet() == 1
+            ? Mono.just("slow").delayElement(Duration.ofSeconds(5)).doOnCancel(cancelled::incrementAndGet)
+            : Mono.just("hedge"));
+
+        StepVerifier.create(hedger.hedge(call))
+            .expectNext("hedge")
+            .expectComplete()
+            .verify(Duration.ofSeconds(1));
+
+        assertThat(attempts).hasValue(2);
+        assertThat(cancelled).hasValue(1);
+        assertThat(meterRegistry.counter("composite.hedge.sent").count()).isEqualTo(1);
+    }
+
+    @Test
+    void hedgeErrorDoesNotBeatSlowCall() {
+        Hedger hedger = hedger(100);
+        train(hedger);
+
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> attempts.incrementAndGet() == 1
+            ? Mono.just("slow").delayElement(Duration.ofMillis(200))
+            : Mono.error(new IOException("connection refused")));
+
+        StepVerifier.create(hedger.hedge(call))
+            .expectNext("slow")
+            .expectComplete()
+            .verify(Duration.ofSeconds(1));
+
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void failsWithErrorOfFirstAttemptWhenBothFail() {
+        Hedger hedger = hedger(100);
+        train(hedger);
+
+        AtomicInteger attempts = new AtomicInteger();
+        Flux<String> call = Flux.defer(() -> attempts.incrementAndGet() == 1
+            ? Flux.<String>error(new IOException("timed out")).delaySubscription(Duration.ofMillis(200))
+            : Flux.error(new IOException("connection refused")));
+
+        StepVerifier.create(hedger.hedge(call))
+            .expectErrorMessage("timed out")
+            .verify(Duration.ofSeconds(1));
+
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void doesNotHedgeCallThatFailedBeforeHedgeDelay() throws InterruptedException {
+        Hedger hedger = hedger(100);
+        train(hedger);
+
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new IOException("connection refused"));
+        });
+
+        StepVerifier.create(hedger.hedge(call))
+            .expectErrorMessage("connection refused")
+            .verify(Duration.ofSeconds(1));
+
+        Thread.sleep(50);
+        assertThat(attempts).hasValue(1);
+        assertThat(meterRegistry.counter("composite.hedge.sent").count()).isZero();
+    }
+
+    @Test
+    void doesNotHedgeBeyondBudget() {
+        Hedger hedger = hedger(0);
+        train(hedger);
+
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.just("slow").delayElement(Duration.ofMillis(100));
+        });
+
+        StepVerifier.create(hedger.hedge(call))
+            .expectNext("slow")
+            .expectComplete()
+            .verify(Duration.ofSeconds(1));
+
+        assertThat(attempts).hasValue(1);
+        assertThat(meterRegistry.counter("composite.hedge.rejected").count()).isEqualTo(1);
+    }
+
+    private Hedger hedger(int budgetPercent) {
+        return new Hedger("product", 95, Duration.ofMillis(10), 20, 10, budgetPercent, 10,
+            meterRegistry.counter("composite.hedge.sent"), meterRegistry.counter("composite.hedge.rejected"));
+    }
+
+    private void train(Hedger hedger) {
+        for (int i = 0; i < 20; i++) {
+            hedger.hedge(Mono.just("fast")).block();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.mj.microservices.composite.product.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.mj.api.composite.product.ProductAggregate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class ProductAggregateCacheTest {
+
+    private final ProductAggregateCache cache = new ProductAggregateCache(new SimpleMeterRegistry(), true, 100,
+        Duration.ofMinutes(1));
+
+    @Test
+    void doesNotCacheLoadsThatRacedWrite() {
+        Sinks.One<ProductAggregate> load = Sinks.one();
+        CompletableFuture<ProductAggregate> loaded = cache.get(1, load.asMono()).toFuture();
+        Sinks.One<Map<Integer, ProductAggregate>> loadAll = Sinks.one();
+        CompletableFuture<Map<Integer, ProductAggregate>> loadedAll = cache.putAll(List.of(2, 3), loadAll.asMono())
+            .toFuture();
+
+        cache.invalidateAfterWrite(1);
+        cache.invalidateAfterWrite(2);
+        load.tryEmitValue(aggregate(1, "old"));
+        loadAll.tryEmitValue(Map.of(2, aggregate(2, "old"), 3, aggregate(3, "unchanged")));
+
+        assertThat(loaded.join()).isNotNull();
+        assertThat(loadedAll.join()).containsOnlyKeys(2, 3);
+        assertThat(cache.getAllPresent(List.of(1, 2, 3))).containsOnlyKeys(3);
+
+        cache.get(1, Mono.just(aggregate(1, "new"))).block();
+        assertThat(cache.getAllPresent(List.of(1))).containsKey(1);
+    }
+
+    @Test
+    void doesNotCacheDegradedAggregates() {
+        Mono<ProductAggregate> degraded = Mono.deferContextual(context -> {
+            ProductAggregateCache.markDegraded(context);
+            return Mono.just(aggregate(1, "without reviews"));
+        });
+
+        assertThat(cache.get(1, degraded).block()).isNotNull();
+        assertThat(cache.putAll(List.of(2), degraded.map(aggregate -> Map.of(2, aggregate))).block()).containsKey(2);
+        assertThat(cache.getAllPresent(List.of(1, 2))).isEmpty();
+
+        cache.get(1, Mono.just(aggregate(1, "complete"))).block();
+        cache.putAll(List.of(2), Mono.just(Map.of(2, aggregate(2, "complete")))).block();
+        assertThat(cache.getAllPresent(List.of(1, 2))).containsOnlyKeys(1, 2);
+    }
+
+    private static ProductAggregate aggregate(int productId, String name) {
+        return new ProductAggregate(productId, name, 1, List.of(), List.of(), null);
+    }
+}
@@ -0,0 +1,91 @@
+package com.mj.microservices.composite.product.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+class ServiceHttpClientsTest {
+
+    private static final String BODY = "{\"name\":\"" + "x".repeat(4096) + "\"}";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicReference<String> acceptEncoding = new AtomicReference<>();
+    private final AtomicReference<String> protocol = new AtomicReference<>();
+    private DisposableServer server;
+    private ServiceHttpClients httpClients;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.addRegistry(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        httpClients.destroy();
+        server.disposeNow();
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    @Test
+    void compressedResponsesOverPooledConnections() {
+        startServer(HttpProtocol.HTTP11);
+        httpClients = httpClients(false);
+
+        assertThat(get(CircuitBreakers.PRODUCT)).isEqualTo(BODY);
+        assertThat(acceptEncoding.get()).contains("gzip");
+        assertThat(protocol.get()).isEqualTo("HTTP/1.1");
+        assertThat(meterRegistry.find("reactor.netty.connection.provider.total.connections")
+            .tag("name", CircuitBreakers.PRODUCT).gauge()).isNotNull();
+    }
+
+    @Test
+    void h2c() {
+        startServer(HttpProtocol.H2C);
+        httpClients = httpClients(true);
+
+        assertThat(get(CircuitBreakers.REVIEW)).isEqualTo(BODY);
+        assertThat(protocol.get()).isEqualTo("h2c");
+    }
+
+    private String get(String service) {
+        return WebClient.builder()
+            .clientConnector(httpClients.get(service))
+            .build()
+            .get()
+            .uri("http://localhost:" + server.port() + "/")
+            .retrieve()
+            .bodyToMono(String.class)
+            .block(Duration.ofSeconds(5));
+    }
+
+    private void startServer(HttpProtocol serverProtocol) {
+        server = HttpServer.create()
+            .port(0)
+            .protocol(serverProtocol)
+            .compress(true)
+            .handle((request, response) -> {
+                acceptEncoding.set(request.requestHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+                protocol.set(request.requestHeaders().contains("x-http2-stream-id") ? "h2c" : request.version().text());
+                return response.header(HttpHeaders.CONTENT_TYPE, "application/json").sendString(Mono.just(BODY));
+            })
+            .bindNow();
+    }
+
+    private static ServiceHttpClients httpClients(boolean h2c) {
+        return new ServiceHttpClients(new MockEnvironment(), 10, 100, Duration.ofSeconds(1), Duration.ofSeconds(30),
+            Duration.ofMinutes(5), Duration.ofSeconds(30), Duration.ofSeconds(1), true, h2c);
+    }
+}
@@ -1,9 +1,13 @@
 package com.mj.microservices.core.product.persistence;
 
-import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import java.util.Collection;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface ProductRepository extends ReactiveCrudRepository<ProductEntity, String> {
+public interface ProductRepository extends ReactiveMongoRepository<ProductEntity, String> {
 
     Mono<ProductEntity> findByProductId(int productId);
+
+    Flux<ProductEntity> findByProductIdInOrderByProductIdAsc(Collection<Integer> productIds);
 }
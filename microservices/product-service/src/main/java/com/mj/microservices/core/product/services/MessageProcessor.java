@@ -3,44 +3,112 @@ package com.mj.microservices.core.product.services;
 import com.mj.api.core.product.Product;
 import com.mj.api.core.product.ProductService;
 import com.mj.api.event.Event;
+import com.mj.api.event.EventStreamProcessor;
 import com.mj.util.exceptions.EventProcessingException;
-import lombok.RequiredArgsConstructor;
+import com.mj.util.metrics.ReactiveMetrics;
+import com.mj.util.tracing.ReactiveTracing;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.annotation.StreamListener;
-import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-@EnableBinding(Sink.class)
+/**
+ * Reactive consumer of the input binding, see spring.cloud.function.definition.
+ *
+ * Events that still fail after app.messaging.max-attempts are published to the dead-letters
+ * binding together with the exception message.
+ */
+@Component
 @Slf4j
-@RequiredArgsConstructor
-public class MessageProcessor {
+public class MessageProcessor extends EventStreamProcessor<Integer, Product>
+    implements Function<Flux<Message<Event<Integer, Product>>>, Mono<Void>> {
+
+    public static final String DEAD_LETTERS = "dead-letters";
 
     private final ProductService productService;
+    private final StreamBridge streamBridge;
+    private final ReactiveMetrics metrics;
+    private final ReactiveTracing tracing;
+
+    public MessageProcessor(
+        ProductService productService,
+        StreamBridge streamBridge,
+        ReactiveMetrics metrics,
+        ReactiveTracing tracing,
+        @Value("${app.messaging.concurrency:1}") int concurrency,
+        @Value("${app.messaging.max-attempts:3}") int maxAttempts,
+        @Value("${app.messaging.back-off-initial-interval:500ms}") Duration backOffInitialInterval,
+        @Value("${app.messaging.batch.max-size:1}") int batchMaxSize,
+        @Value("${app.messaging.batch.max-wait:50ms}") Duration batchMaxWait,
+        @Value("${app.messaging.dedup-capacity:10000}") int dedupCapacity) {
+        super(concurrency, maxAttempts, backOffInitialInterval, batchMaxSize, batchMaxWait, dedupCapacity);
+        this.productService = productService;
+        this.streamBridge = streamBridge;
+        this.metrics = metrics;
+        this.tracing = tracing;
+    }
 
-    @StreamListener(target = Sink.INPUT)
-    public void process(Event<Integer, Product> event) {
+    @Override
+    public Mono<Void> apply(Flux<Message<Event<Integer, Product>>> messages) {
+        return process(messages
+            .onErrorContinue((error, message) -> log.warn("Skips a message that can't be read: {}", error.toString())));
+    }
+
+    @Override
+    public Mono<Void> processEvent(Event<Integer, Product> event) {
         log.info("Process message created at {}...", event.getEventCreatedAt());
 
-        switch (event.getEventType()) {
+        Mono<Void> result = switch (event.getEventType()) {
             case CREATE -> {
                 Product product = event.getData();
                 log.info("Create product with Id: {}", product.getProductId());
-                productService.createProduct(product);
+                yield productService.createProduct(product).then();
+            }
+            case CREATE_BATCH -> {
+                List<Product> products = event.getBatch();
+                log.info("Create {} products", products.size());
+                yield productService.createProducts(products).then();
             }
             case DELETE -> {
                 int productId = event.getKey();
-                log.info("Delete recommendations with ProductId: {}", productId);
-                productService.deleteProduct(productId);
+                log.info("Delete product with ProductId: {}", productId);
+                yield productService.deleteProduct(productId);
             }
             default -> {
                 String errorMessage = "Incorrect event type: " + event.getEventType()
-                    + ", expected a CREATE or DELETE event";
+                    + ", expected a CREATE, CREATE_BATCH or DELETE event";
                 log.warn(errorMessage);
-                throw new EventProcessingException(errorMessage);
+                yield Mono.error(new EventProcessingException(errorMessage));
             }
-        }
+        };
+
+        return metrics.time(ReactiveMetrics.EVENT_PROCESSING, result, "type", event.getEventType().name())
+            .doOnSuccess(v -> log.info("Message processing done!"));
+    }
+
+    @Override
+    protected Mono<Void> createAll(List<Product> entities) {
+        return metrics.time(ReactiveMetrics.EVENT_PROCESSING, productService.createProducts(entities).then(), "type", "BULK");
+    }
+
+    @Override
+    protected Mono<Void> observe(String operation, List<MessageHeaders> headers, Mono<Void> processing) {
+        return tracing.consume("process " + operation, headers, processing);
+    }
 
-        log.info("Message processing done!");
+    @Override
+    protected void deadLetter(Event<Integer, Product> event, Throwable error) {
+        streamBridge.send(DEAD_LETTERS, MessageBuilder.withPayload(event)
+            .setHeader("x-exception-message", error.getMessage())
+            .setHeader("x-exception-class", error.getClass().getName())
+            .build());
     }
 }
@@ -2,6 +2,7 @@ package com.mj.microservices.core.product.services;
 
 import com.mj.api.core.product.Product;
 import com.mj.microservices.core.product.persistence.ProductEntity;
+import java.util.List;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.Mappings;
@@ -19,4 +20,6 @@ public interface ProductMapper {
         @Mapping(target = "version", ignore = true)
     })
     ProductEntity apiToEntity(Product api);
+
+    List<ProductEntity> apiListToEntityList(List<Product> api);
 }
@@ -7,9 +7,12 @@ import com.mj.microservices.core.product.persistence.ProductRepository;
 import com.mj.util.exceptions.InvalidInputException;
 import com.mj.util.exceptions.NotFoundException;
 import com.mj.util.http.ServiceUtil;
+import java.util.List;
+import java.util.logging.Level;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DuplicateKeyException;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -48,20 +51,35 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
-    public Product createProduct(Product body) {
+    public Mono<Product> createProduct(Product body) {
         if (body.getProductId() < 1) {
             throw new InvalidInputException("Invalid productId: " + body.getProductId());
         }
 
         ProductEntity entity = mapper.apiToEntity(body);
-        Mono<Product> newEntity = repository.save(entity)
+        return repository.save(entity)
             .log()
             .onErrorMap(DuplicateKeyException.class,
                 ex -> new InvalidInputException(
                     "Duplicate key, Product Id: " + body.getProductId()))
             .map(e -> mapper.entityToApi(e));
+    }
 
-        return newEntity.block();
+    @Override
+    public Flux<Product> createProducts(List<Product> body) {
+        body.forEach(p -> {
+            if (p.getProductId() < 1) {
+                throw new InvalidInputException("Invalid productId: " + p.getProductId());
+            }
+        });
+
+        log.debug("createProducts: inserts {} products with one bulk insert", body.size());
+        return repository.insert(mapper.apiListToEntityList(body))
+            .log(null, Level.FINE)
+            .onErrorMap(DuplicateKeyException.class,
+                ex -> new InvalidInputException(
+                    "Duplicate key in a batch of " + body.size() + " products"))
+            .map(e -> mapper.entityToApi(e));
     }
 
 //    @Override
@@ -96,6 +114,24 @@ public class ProductServiceImpl implements ProductService {
             });
     }
 
+    @Override
+    public Flux<Product> getProducts(List<Integer> productIds) {
+        productIds.forEach(productId -> {
+            if (productId < 1) {
+                throw new InvalidInputException("Invalid productId: " + productId);
+            }
+        });
+
+        log.debug("getProducts: tries to find products for productIds: {}", productIds);
+        return repository.findByProductIdInOrderByProductIdAsc(productIds)
+            .log()
+            .map(e -> mapper.entityToApi(e))
+            .map(e -> {
+                e.setServiceAddress(serviceUtil.getServiceAddress());
+                return e;
+            });
+    }
+
 //    @Override
 //    public void deleteProduct_blocking_model(int productId) {
 //        log.info("delete Product: tries to delete an entity with productId: {}", productId);
@@ -104,16 +140,14 @@ public class ProductServiceImpl implements ProductService {
 
 
     @Override
-    public void deleteProduct(int productId) {
+    public Mono<Void> deleteProduct(int productId) {
         if (productId < 1) {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
 
         log.debug("deleteProduct: tries to delete an entity with productId: {}", productId);
-        repository.findByProductId(productId)
+        return repository.findByProductId(productId)
             .log()
-            .map(e -> repository.delete(e))
-            .flatMap(e -> e)
-            .block();
+            .flatMap(e -> repository.delete(e));
     }
 }
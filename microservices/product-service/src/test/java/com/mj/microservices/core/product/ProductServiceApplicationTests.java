@@ -1,7 +1,6 @@
 package com.mj.microservices.core.product;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.fail;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static reactor.core.publisher.Mono.just;
@@ -10,28 +9,32 @@ import com.mj.api.core.product.Product;
 import com.mj.api.event.Event;
 import com.mj.api.event.Event.Type;
 import com.mj.microservices.core.product.persistence.ProductRepository;
-import com.mj.util.exceptions.InvalidInputException;
+import com.mj.microservices.core.product.services.MessageProcessor;
 import lombok.extern.slf4j.Slf4j;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
-import org.springframework.integration.channel.AbstractMessageChannel;
-import org.springframework.messaging.MessagingException;
-import org.springframework.messaging.support.GenericMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.test.web.reactive.server.WebTestClient.BodyContentSpec;
+import reactor.core.publisher.Flux;
 
 @Slf4j
 @SpringBootTest(webEnvironment = RANDOM_PORT,
 	properties = { "spring.data.mongodb.port=0",
 		"spring.mongodb.embedded.version=3.6.9",
 		"spring.data.mongodb.auto-index-creation=true",
+		"app.messaging.back-off-initial-interval=1ms",
 		"eureka.client.enabled=false"
 		})
+@Import(TestChannelBinderConfiguration.class)
 public class ProductServiceApplicationTests {
 
 	@Autowired
@@ -41,14 +44,14 @@ public class ProductServiceApplicationTests {
 	private ProductRepository repository;
 
 	@Autowired
-	private Sink channels;
+	private MessageProcessor messageProcessor;
 
-	private AbstractMessageChannel input = null;
+	@Autowired
+	private OutputDestination target;
 
 	@BeforeEach
 	public void setup() {
-		log.info(channels.toString());
-		input = (AbstractMessageChannel) channels.input();
+		target.clear();
 		repository.deleteAll().block();
 	}
 
@@ -79,6 +82,19 @@ public class ProductServiceApplicationTests {
 
 
 
+	@Test
+	public void getProducts() {
+
+		sendCreateProductEvent(1);
+		sendCreateProductEvent(2);
+		sendCreateProductEvent(3);
+
+		getAndVerifyProduct("?productIds=3,1,4", HttpStatus.OK)
+			.jsonPath("$.length()").isEqualTo(2)
+			.jsonPath("$[0].productId").isEqualTo(1)
+			.jsonPath("$[1].productId").isEqualTo(3);
+	}
+
 	@Test
 	public void duplicateError() {
 		int productId = 1;
@@ -98,17 +114,8 @@ public class ProductServiceApplicationTests {
 
 		assertThat(repository.findByProductId(productId).block()).isNotNull();
 
-		try {
-			sendCreateProductEvent(productId);
-			fail("Expected a MessagingException here!");
-		} catch (MessagingException me) {
-			if (me.getCause() instanceof InvalidInputException) {
-				InvalidInputException iie = (InvalidInputException) me.getCause();
-				assertThat(iie.getMessage()).isEqualTo("Duplicate key, Product Id: " + productId);
-			} else {
-				fail("Expected a InvalidInputException as the root cause!");
-			}
-		}
+		sendCreateProductEvent(productId);
+		assertDeadLetter("Duplicate key, Product Id: " + productId);
 	}
 
 	@Test
@@ -188,12 +195,22 @@ public class ProductServiceApplicationTests {
 	private void sendCreateProductEvent(int productId) {
 		Product product = new Product(productId, "Name " + productId, productId, "SA");
 		Event<Integer, Product> event = new Event<>(Type.CREATE, productId, product);
-		input.send(new GenericMessage<>(event));
+		sendEvent(event);
 	}
 
 	private void sendDeleteProductEvent(int productId) {
 		Event<Integer, Product> event = new Event(Type.DELETE, productId, null);
-		input.send(new GenericMessage<>(event));
+		sendEvent(event);
+	}
+
+	private void sendEvent(Event<Integer, Product> event) {
+		messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+	}
+
+	private void assertDeadLetter(String expectedExceptionMessage) {
+		Message<byte[]> deadLetter = target.receive(0, "error.products.productsGroup");
+		assertThat(deadLetter).isNotNull();
+		assertThat(deadLetter.getHeaders().get("x-exception-message")).isEqualTo(expectedExceptionMessage);
 	}
 
 	private BodyContentSpec getAndVerifyProduct(String productIdPath, HttpStatus status) {
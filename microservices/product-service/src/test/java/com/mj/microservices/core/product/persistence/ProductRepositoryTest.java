@@ -1,5 +1,6 @@
 package com.mj.microservices.core.product.persistence;
 
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -121,6 +122,19 @@ class ProductRepositoryTest {
             .verifyComplete();
     }
 
+    @Test
+    public void getByProductIdIn() {
+        ProductEntity newEntity = new ProductEntity(3, "n", 3);
+        StepVerifier.create(repository.save(newEntity))
+            .expectNextCount(1)
+            .verifyComplete();
+
+        StepVerifier.create(repository.findByProductIdInOrderByProductIdAsc(List.of(3, 2, 1)))
+            .expectNextMatches(foundEntity -> areProductEqual(foundEntity, savedEntity))
+            .expectNextMatches(foundEntity -> foundEntity.getProductId() == newEntity.getProductId())
+            .verifyComplete();
+    }
+
 //    @Test
 //    public void duplicateError() {
 ////        assertThatThrownBy(() -> {
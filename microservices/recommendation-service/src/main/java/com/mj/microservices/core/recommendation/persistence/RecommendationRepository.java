@@ -1,10 +1,17 @@
 package com.mj.microservices.core.recommendation.persistence;
 
-import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import java.util.Collection;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 
+/**
+ * ReactiveMongoRepository for insert(Iterable), which writes a batch with a single insertMany.
+ */
 public interface RecommendationRepository extends
-    ReactiveCrudRepository<RecommendationEntity, String> {
+    ReactiveMongoRepository<RecommendationEntity, String> {
 
     Flux<RecommendationEntity> findByProductId(int productId);
+
+    Flux<RecommendationEntity> findByProductIdInOrderByProductIdAscRecommendationIdAsc(
+        Collection<Integer> productIds);
 }
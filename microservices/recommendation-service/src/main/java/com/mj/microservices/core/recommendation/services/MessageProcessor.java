@@ -3,51 +3,120 @@ package com.mj.microservices.core.recommendation.services;
 import com.mj.api.core.recommendation.Recommendation;
 import com.mj.api.core.recommendation.RecommendationService;
 import com.mj.api.event.Event;
+import com.mj.api.event.EventStreamProcessor;
 import com.mj.util.exceptions.EventProcessingException;
+import com.mj.util.metrics.ReactiveMetrics;
+import com.mj.util.tracing.ReactiveTracing;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cloud.stream.annotation.EnableBinding;
-import org.springframework.cloud.stream.annotation.StreamListener;
-import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-@EnableBinding(Sink.class)
-public class MessageProcessor {
+/**
+ * Reactive consumer of the input binding, see spring.cloud.function.definition.
+ *
+ * Events that still fail after app.messaging.max-attempts are published to the dead-letters
+ * binding together with the exception message.
+ */
+@Component
+public class MessageProcessor extends EventStreamProcessor<Integer, Recommendation>
+    implements Function<Flux<Message<Event<Integer, Recommendation>>>, Mono<Void>> {
 
     private static final Logger LOG = LoggerFactory.getLogger(MessageProcessor.class);
 
+    public static final String DEAD_LETTERS = "dead-letters";
+
     private final RecommendationService recommendationService;
+    private final StreamBridge streamBridge;
+    private final ReactiveMetrics metrics;
+    private final ReactiveTracing tracing;
 
     @Autowired
-    public MessageProcessor(RecommendationService recommendationService) {
+    public MessageProcessor(
+        RecommendationService recommendationService,
+        StreamBridge streamBridge,
+        ReactiveMetrics metrics,
+        ReactiveTracing tracing,
+        @Value("${app.messaging.concurrency:1}") int concurrency,
+        @Value("${app.messaging.max-attempts:3}") int maxAttempts,
+        @Value("${app.messaging.back-off-initial-interval:500ms}") Duration backOffInitialInterval,
+        @Value("${app.messaging.batch.max-size:1}") int batchMaxSize,
+        @Value("${app.messaging.batch.max-wait:50ms}") Duration batchMaxWait,
+        @Value("${app.messaging.dedup-capacity:10000}") int dedupCapacity) {
+        super(concurrency, maxAttempts, backOffInitialInterval, batchMaxSize, batchMaxWait, dedupCapacity);
         this.recommendationService = recommendationService;
+        this.streamBridge = streamBridge;
+        this.metrics = metrics;
+        this.tracing = tracing;
+    }
+
+    @Override
+    public Mono<Void> apply(Flux<Message<Event<Integer, Recommendation>>> messages) {
+        return process(messages
+            .onErrorContinue((error, message) -> LOG.warn("Skips a message that can't be read: {}", error.toString())));
     }
 
-    @StreamListener(target = Sink.INPUT)
-    public void process(Event<Integer, Recommendation> event) {
+    @Override
+    public Mono<Void> processEvent(Event<Integer, Recommendation> event) {
 
         LOG.info("Process message created at {}...", event.getEventCreatedAt());
 
+        Mono<Void> result;
         switch (event.getEventType()) {
 
             case CREATE:
                 Recommendation recommendation = event.getData();
                 LOG.info("Create recommendation with ID: {}/{}", recommendation.getProductId(), recommendation.getRecommendationId());
-                recommendationService.createRecommendation(recommendation);
+                result = recommendationService.createRecommendation(recommendation).then();
+                break;
+
+            case CREATE_BATCH:
+                List<Recommendation> recommendations = event.getBatch();
+                LOG.info("Create {} recommendations with ProductID: {}", recommendations.size(), event.getKey());
+                result = recommendationService.createRecommendations(recommendations).then();
                 break;
 
             case DELETE:
                 int productId = event.getKey();
                 LOG.info("Delete recommendations with ProductID: {}", productId);
-                recommendationService.deleteRecommendations(productId);
+                result = recommendationService.deleteRecommendations(productId);
                 break;
 
             default:
-                String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE or DELETE event";
+                String errorMessage = "Incorrect event type: " + event.getEventType() + ", expected a CREATE, CREATE_BATCH or DELETE event";
                 LOG.warn(errorMessage);
-                throw new EventProcessingException(errorMessage);
+                result = Mono.error(new EventProcessingException(errorMessage));
         }
 
-        LOG.info("Message processing done!");
+        return metrics.time(ReactiveMetrics.EVENT_PROCESSING, result, "type", event.getEventType().name())
+            .doOnSuccess(v -> LOG.info("Message processing done!"));
+    }
+
+    @Override
+    protected Mono<Void> createAll(List<Recommendation> entities) {
+        return metrics.time(ReactiveMetrics.EVENT_PROCESSING, recommendationService.createRecommendations(entities).then(), "type", "BULK");
+    }
+
+    @Override
+    protected Mono<Void> observe(String operation, List<MessageHeaders> headers, Mono<Void> processing) {
+        return tracing.consume("process " + operation, headers, processing);
+    }
+
+    @Override
+    protected void deadLetter(Event<Integer, Recommendation> event, Throwable error) {
+        streamBridge.send(DEAD_LETTERS, MessageBuilder.withPayload(event)
+            .setHeader("x-exception-message", error.getMessage())
+            .setHeader("x-exception-class", error.getClass().getName())
+            .build());
     }
 }
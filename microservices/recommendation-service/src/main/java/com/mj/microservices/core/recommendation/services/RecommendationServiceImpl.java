@@ -8,6 +8,7 @@ import com.mj.util.exceptions.InvalidInputException;
 import com.mj.util.http.ServiceUtil;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DuplicateKeyException;
@@ -62,6 +63,23 @@ public class RecommendationServiceImpl implements RecommendationService {
             });
     }
 
+    @Override
+    public Flux<Recommendation> getRecommendationsForProducts(List<Integer> productIds) {
+        productIds.forEach(productId -> {
+            if (productId < 1) {
+                throw new InvalidInputException("Invalid productId: " + productId);
+            }
+        });
+
+        return repository.findByProductIdInOrderByProductIdAscRecommendationIdAsc(productIds)
+            .log()
+            .map(e -> mapper.entityToApi(e))
+            .map(e -> {
+                e.setServiceAddress(serviceUtil.getServiceAddress());
+                return e;
+            });
+    }
+
 //    @Override
 //    public Recommendation createRecommendation(Recommendation body) {
 //        try {
@@ -78,13 +96,13 @@ public class RecommendationServiceImpl implements RecommendationService {
 
 
     @Override
-    public Recommendation createRecommendation(Recommendation body) {
+    public Mono<Recommendation> createRecommendation(Recommendation body) {
         if (body.getProductId() < 1) {
             throw new InvalidInputException("Invalid productId: " + body.getProductId());
         }
 
         RecommendationEntity entity = mapper.apiToEntity(body);
-        Mono<Recommendation> newEntity = repository.save(entity)
+        return repository.save(entity)
             .log()
             .onErrorMap(
                 DuplicateKeyException.class,
@@ -92,8 +110,25 @@ public class RecommendationServiceImpl implements RecommendationService {
                     "Duplicate key, Product Id: " + body.getProductId() + ", Recommendation Id: "
                         + body.getRecommendationId()))
             .map(e -> mapper.entityToApi(e));
+    }
 
-        return newEntity.block();
+    @Override
+    public Flux<Recommendation> createRecommendations(List<Recommendation> body) {
+        body.forEach(r -> {
+            if (r.getProductId() < 1) {
+                throw new InvalidInputException("Invalid productId: " + r.getProductId());
+            }
+        });
+
+        log.debug("createRecommendations: inserts {} recommendations with one bulk insert", body.size());
+        return repository.insert(mapper.apiListToEntityList(body))
+            .log(null, Level.FINE)
+            .onErrorMap(
+                DuplicateKeyException.class,
+                ex -> new InvalidInputException(
+                    "Duplicate key in a batch of " + body.size() + " recommendations, Product Id: "
+                        + body.get(0).getProductId()))
+            .map(e -> mapper.entityToApi(e));
     }
 
 //    @Override
@@ -104,12 +139,12 @@ public class RecommendationServiceImpl implements RecommendationService {
 
 
     @Override
-    public void deleteRecommendations(int productId) {
+    public Mono<Void> deleteRecommendations(int productId) {
         if (productId < 1) {
             throw new InvalidInputException("Invalid productId: " + productId);
         }
 
         log.debug("deleteRecommendations: tries to delete recommendations for the product with productId: {}", productId);
-        repository.deleteAll(repository.findByProductId(productId)).block();
+        return repository.deleteAll(repository.findByProductId(productId));
     }
 }
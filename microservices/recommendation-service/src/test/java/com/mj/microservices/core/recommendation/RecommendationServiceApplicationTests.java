@@ -1,41 +1,49 @@
 package com.mj.microservices.core.recommendation;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.fail;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 
 import com.mj.api.core.product.Product;
 import com.mj.api.core.recommendation.Recommendation;
 import com.mj.api.event.Event;
 import com.mj.api.event.Event.Type;
 import com.mj.microservices.core.recommendation.persistence.RecommendationRepository;
-import com.mj.util.exceptions.InvalidInputException;
+import com.mj.microservices.core.recommendation.services.MessageProcessor;
 import io.micrometer.core.annotation.TimedSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
-import org.springframework.integration.channel.AbstractMessageChannel;
-import org.springframework.messaging.MessagingException;
-import org.springframework.messaging.support.GenericMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 @SpringBootTest(webEnvironment = RANDOM_PORT,
 	properties = { "spring.data.mongodb.port=0",
 		"spring.mongodb.embedded.version=3.6.9",
 		"spring.data.mongodb.auto-index-creation=true",
+		"app.messaging.back-off-initial-interval=1ms",
 		"eureka.client.enabled=false"
 	})
+@Import(TestChannelBinderConfiguration.class)
 public class RecommendationServiceApplicationTests {
 
 	@Autowired
@@ -45,13 +53,14 @@ public class RecommendationServiceApplicationTests {
 	private RecommendationRepository repository;
 
 	@Autowired
-	private Sink channels;
+	private MessageProcessor messageProcessor;
 
-	private AbstractMessageChannel input = null;
+	@Autowired
+	private OutputDestination target;
 
 	@BeforeEach
 	public void setUp() {
-		input = (AbstractMessageChannel) channels.input();
+		target.clear();
 		repository.deleteAll().block();
 	}
 
@@ -79,6 +88,42 @@ public class RecommendationServiceApplicationTests {
 			.jsonPath("$[0].recommendationId").isEqualTo(1);
 	}
 
+	@Test
+	public void getRecommendationsByProductIdAsStream() {
+
+		int productId = 1;
+
+		sendCreateRecommendationEvent(productId, 1);
+		sendCreateRecommendationEvent(productId, 2);
+
+		StepVerifier.create(client.get()
+				.uri("/recommendation?productId=" + productId)
+				.accept(APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON)
+				.returnResult(Recommendation.class)
+				.getResponseBody())
+			.expectNextMatches(recommendation -> recommendation.getRecommendationId() == 1)
+			.expectNextMatches(recommendation -> recommendation.getRecommendationId() == 2)
+			.verifyComplete();
+	}
+
+	@Test
+	public void getRecommendationsForProducts() {
+
+		sendCreateRecommendationEvent(1, 1);
+		sendCreateRecommendationEvent(2, 1);
+		sendCreateRecommendationEvent(2, 2);
+		sendCreateRecommendationEvent(3, 1);
+
+		getAndVerifyRecommendationsByProductId("?productIds=2,1", OK)
+			.jsonPath("$.length()").isEqualTo(3)
+			.jsonPath("$[0].productId").isEqualTo(1)
+			.jsonPath("$[1].productId").isEqualTo(2)
+			.jsonPath("$[2].productId").isEqualTo(2);
+	}
+
 	@Test
 	public void duplicateError() {
 		int productId = 1;
@@ -88,22 +133,24 @@ public class RecommendationServiceApplicationTests {
 
 		assertThat(repository.count().block()).isEqualTo(1);
 
-		try {
-			sendCreateRecommendationEvent(productId, recommendationId);
-			fail("Expected a MessagingException here!");
-		} catch (MessagingException me) {
-			if (me.getCause() instanceof InvalidInputException) {
-				InvalidInputException iie = (InvalidInputException) me.getCause();
-				assertThat(iie.getMessage()).isEqualTo(
-					"Duplicate key, Product Id: 1, Recommendation Id: 1");
-			} else {
-				fail("Expected a InvalidInputException as the root cause");
-			}
-		}
+		sendCreateRecommendationEvent(productId, recommendationId);
+		assertDeadLetter("Duplicate key, Product Id: 1, Recommendation Id: 1");
 
 		assertThat(repository.count().block()).isEqualTo(1);
 	}
 
+	@Test
+	public void createRecommendationsBatch() {
+		int productId = 1;
+
+		sendCreateRecommendationsBatchEvent(productId, 1, 2, 3);
+
+		assertThat(repository.findByProductId(productId).count().block()).isEqualTo(3);
+
+		sendCreateRecommendationsBatchEvent(productId, 3, 4);
+		assertDeadLetter("Duplicate key in a batch of 2 recommendations, Product Id: 1");
+	}
+
 	@Test
 	public void deleteRecommendation() {
 		int productId = 1;
@@ -221,11 +268,30 @@ public class RecommendationServiceApplicationTests {
 			recommendationId, "Content " + recommendationId, "SA");
 		Event<Integer, Recommendation> event = new Event<>(Type.CREATE,
 			productId, recommendation);
-		input.send(new GenericMessage<>(event));
+		sendEvent(event);
+	}
+
+	private void sendCreateRecommendationsBatchEvent(int productId, int... recommendationIds) {
+		List<Recommendation> recommendations = Arrays.stream(recommendationIds)
+			.mapToObj(recommendationId -> new Recommendation(productId, recommendationId,
+				"Author " + recommendationId,
+				recommendationId, "Content " + recommendationId, "SA"))
+			.collect(Collectors.toList());
+		sendEvent(Event.createBatch(productId, recommendations));
 	}
 
 	private void sendDeleteRecommendationEvent(int productId) {
-		Event<Integer, Product> event = new Event(Type.DELETE, productId, null);
-		input.send(new GenericMessage<>(event));
+		Event<Integer, Recommendation> event = new Event(Type.DELETE, productId, null);
+		sendEvent(event);
+	}
+
+	private void sendEvent(Event<Integer, Recommendation> event) {
+		messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+	}
+
+	private void assertDeadLetter(String expectedExceptionMessage) {
+		Message<byte[]> deadLetter = target.receive(0, "error.recommendations.recommendationsGroup");
+		assertThat(deadLetter).isNotNull();
+		assertThat(deadLetter.getHeaders().get("x-exception-message")).isEqualTo(expectedExceptionMessage);
 	}
 }
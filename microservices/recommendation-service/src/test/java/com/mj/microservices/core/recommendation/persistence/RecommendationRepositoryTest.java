@@ -74,6 +74,23 @@ class RecommendationRepositoryTest {
         assertEqualsRecommendation(savedEntity, recommendationEntities.get(0));
     }
 
+    @Test
+    public void getByProductIdIn() {
+        repository.save(new RecommendationEntity(2, 1, "a", 3, "c")).block();
+        repository.save(new RecommendationEntity(1, 1, "a", 3, "c")).block();
+        repository.save(new RecommendationEntity(3, 1, "a", 3, "c")).block();
+
+        List<RecommendationEntity> recommendationEntities = repository
+            .findByProductIdInOrderByProductIdAscRecommendationIdAsc(List.of(2, 1))
+            .collectList().block();
+
+        assertThat(recommendationEntities, Matchers.hasSize(3));
+        assertEquals(1, recommendationEntities.get(0).getProductId());
+        assertEquals(1, recommendationEntities.get(0).getRecommendationId());
+        assertEqualsRecommendation(savedEntity, recommendationEntities.get(1));
+        assertEquals(2, recommendationEntities.get(2).getProductId());
+    }
+
     @Test
     public void duplicateError() {
         RecommendationEntity entity = new RecommendationEntity(1, 2, "a", 3, "c");
@@ -0,0 +1,79 @@
+package com.mj.microservices.core.review;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Executor behind the jdbcScheduler.
+ *
+ * In fixed mode blocking JDBC calls run on a fixed pool of platform threads, one per connection.
+ * In virtual mode every call gets its own virtual thread and a semaphore with one permit per
+ * connection bounds how many of them reach the connection pool at a time. Virtual threads need a
+ * Java 21 runtime; on older runtimes virtual mode falls back to the fixed pool.
+ *
+ * The time a call waits for a thread or a permit is recorded as review.jdbc.scheduler.queue.wait.
+ */
+@Slf4j
+public class JdbcSchedulerExecutor implements Executor {
+
+    public enum Mode { FIXED, VIRTUAL }
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final Timer queueWait;
+
+    public JdbcSchedulerExecutor(Mode mode, int poolSize, MeterRegistry meterRegistry) {
+        ExecutorService virtualThreadExecutor = mode == Mode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+        Mode activeMode = virtualThreadExecutor != null ? Mode.VIRTUAL : Mode.FIXED;
+
+        this.delegate = virtualThreadExecutor != null ? virtualThreadExecutor : Executors.newFixedThreadPool(poolSize);
+        this.permits = new Semaphore(poolSize);
+        this.queueWait = Timer.builder("review.jdbc.scheduler.queue.wait")
+            .description("Time a blocking JDBC call waits before it gets a thread and a connection permit")
+            .tag("mode", activeMode.name().toLowerCase())
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+
+        Gauge.builder("review.jdbc.scheduler.active", permits, p -> poolSize - p.availablePermits())
+            .description("Blocking JDBC calls currently running")
+            .tag("mode", activeMode.name().toLowerCase())
+            .register(meterRegistry);
+
+        log.info("Creates a jdbcScheduler executor in {} mode with poolSize: {}", activeMode, poolSize);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        long submittedAt = System.nanoTime();
+        delegate.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                queueWait.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                command.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            log.warn("Virtual threads are not available on Java {}, falls back to a fixed thread pool",
+                Runtime.version().feature());
+            return null;
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.mj.microservices.core.review;
 
-import java.util.concurrent.Executors;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
@@ -8,6 +8,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Profile;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
@@ -17,15 +18,26 @@ import reactor.core.scheduler.Schedulers;
 public class ReviewServiceApplication {
 
 	private final Integer connectionPoolSize;
+	private final JdbcSchedulerExecutor.Mode schedulerMode;
 
-	public ReviewServiceApplication(@Value("${spring.datasource.maximum-pool-size:10}") Integer connectionPoolSize) {
+	public ReviewServiceApplication(
+		@Value("${spring.datasource.hikari.maximum-pool-size:${spring.datasource.maximum-pool-size:10}}") Integer connectionPoolSize,
+		@Value("${app.jdbc-scheduler.mode:fixed}") JdbcSchedulerExecutor.Mode schedulerMode) {
 		this.connectionPoolSize = connectionPoolSize;
+		this.schedulerMode = schedulerMode;
+	}
+
+	@Bean(destroyMethod = "shutdown")
+	@Profile("!r2dbc")
+	public JdbcSchedulerExecutor jdbcSchedulerExecutor(MeterRegistry meterRegistry) {
+		return new JdbcSchedulerExecutor(schedulerMode, connectionPoolSize, meterRegistry);
 	}
 
 	@Bean
-	public Scheduler jdbcScheduler() {
+	@Profile("!r2dbc")
+	public Scheduler jdbcScheduler(JdbcSchedulerExecutor jdbcSchedulerExecutor) {
 		log.info("Creates a jdbcScheduler with connectionPoolSize : {}", connectionPoolSize);
-		return Schedulers.fromExecutor(Executors.newFixedThreadPool(connectionPoolSize));
+		return Schedulers.fromExecutor(jdbcSchedulerExecutor);
 	}
 
 	public static void main(String[] args) {
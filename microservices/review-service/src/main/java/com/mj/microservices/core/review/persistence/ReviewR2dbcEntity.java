@@ -0,0 +1,35 @@
+package com.mj.microservices.core.review.persistence;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+@Table("reviews")
+@NoArgsConstructor
+@Getter @Setter
+public class ReviewR2dbcEntity {
+
+    @Id
+    private Integer id;
+
+    @Version
+    private Integer version;
+
+    private int productId;
+    private int reviewId;
+    private String author;
+    private String subject;
+    private String content;
+
+    public ReviewR2dbcEntity(int productId, int reviewId, String author, String subject,
+        String content) {
+        this.productId = productId;
+        this.reviewId = reviewId;
+        this.author = author;
+        this.subject = subject;
+        this.content = content;
+    }
+}
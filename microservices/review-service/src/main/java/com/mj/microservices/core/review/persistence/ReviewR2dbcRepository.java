@@ -0,0 +1,19 @@
+package com.mj.microservices.core.review.persistence;
+
+import java.util.Collection;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReviewR2dbcRepository extends R2dbcRepository<ReviewR2dbcEntity, Integer> {
+
+    Flux<ReviewR2dbcEntity> findByProductId(int productId);
+
+    Flux<ReviewR2dbcEntity> findByProductIdInOrderByProductIdAscReviewIdAsc(Collection<Integer> productIds);
+
+    @Modifying
+    @Query("DELETE FROM reviews WHERE product_id = :productId")
+    Mono<Integer> deleteByProductId(int productId);
+}
@@ -1,5 +1,6 @@
 package com.mj.microservices.core.review.persistence;
 
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.transaction.annotation.Transactional;
@@ -8,4 +9,7 @@ public interface ReviewRepository extends CrudRepository<ReviewEntity, Integer>
 
     @Transactional(readOnly = true)
     List<ReviewEntity> findByProductId(int productId);
+
+    @Transactional(readOnly = true)
+    List<ReviewEntity> findByProductIdInOrderByProductIdAscReviewIdAsc(Collection<Integer> productIds);
 }
@@ -2,6 +2,7 @@ package com.mj.microservices.core.review.services;
 
 import com.mj.api.core.review.Review;
 import com.mj.microservices.core.review.persistence.ReviewEntity;
+import com.mj.microservices.core.review.persistence.ReviewR2dbcEntity;
 import java.util.List;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
@@ -23,4 +24,15 @@ public interface ReviewMapper {
 
         List<Review> entityListToApiList(List<ReviewEntity> entity);
         List<ReviewEntity> apiListToEntityList(List<Review> api);
+
+        @Mappings({
+            @Mapping(target = "serviceAddress", ignore = true)
+        })
+        Review r2dbcEntityToApi(ReviewR2dbcEntity entity);
+
+        @Mappings({
+            @Mapping(target = "id", ignore = true),
+            @Mapping(target = "version", ignore = true)
+        })
+        ReviewR2dbcEntity apiToR2dbcEntity(Review api);
 }
@@ -0,0 +1,161 @@
+package com.mj.microservices.core.review.services;
+
+import com.mj.api.core.review.Review;
+import com.mj.api.core.review.ReviewService;
+import com.mj.microservices.core.review.persistence.ReviewR2dbcEntity;
+import com.mj.microservices.core.review.persistence.ReviewR2dbcRepository;
+import com.mj.util.exceptions.InvalidInputException;
+import com.mj.util.http.ServiceUtil;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.r2dbc.core.binding.BindMarkers;
+import org.springframework.r2dbc.core.binding.BindMarkersFactory;
+import org.springframework.r2dbc.core.binding.BindMarkersFactoryResolver;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of {@link ReviewServiceImpl}, backed by R2DBC instead of JPA.
+ * Activated by the r2dbc profile, no jdbcScheduler threads are involved.
+ */
+@RestController
+@Profile("r2dbc")
+@Slf4j
+public class ReviewR2dbcServiceImpl implements ReviewService {
+
+    private static final String INSERT_REVIEWS =
+        "INSERT INTO reviews (version, product_id, review_id, author, subject, content) VALUES ";
+    private static final int REVIEW_COLUMNS = 6;
+    private static final int INSERT_ROWS_PER_STATEMENT = 1000;
+
+    private final ReviewR2dbcRepository repository;
+    private final ReviewMapper mapper;
+    private final ServiceUtil serviceUtil;
+    private final DatabaseClient databaseClient;
+    private final BindMarkersFactory bindMarkersFactory;
+
+    public ReviewR2dbcServiceImpl(ReviewR2dbcRepository repository, ReviewMapper mapper,
+        ServiceUtil serviceUtil, DatabaseClient databaseClient) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.serviceUtil = serviceUtil;
+        this.databaseClient = databaseClient;
+        this.bindMarkersFactory = BindMarkersFactoryResolver.resolve(databaseClient.getConnectionFactory());
+    }
+
+    @Override
+    public Mono<Review> createReview(Review body) {
+        if (body.getProductId() < 1) throw new InvalidInputException("Invalid productId: " + body.getProductId());
+
+        ReviewR2dbcEntity entity = mapper.apiToR2dbcEntity(body);
+        return repository.save(entity)
+            .log(null, Level.FINE)
+            .onErrorMap(
+                DataIntegrityViolationException.class,
+                ex -> new InvalidInputException(
+                    "Duplicate key, Product Id: " + body.getProductId() + ", Review Id:" + body.getReviewId()))
+            .map(e -> mapper.r2dbcEntityToApi(e));
+    }
+
+    /**
+     * Inserts the reviews with multi-row INSERT statements of at most INSERT_ROWS_PER_STATEMENT
+     * rows each, one round trip per statement instead of one per review.
+     */
+    @Override
+    public Flux<Review> createReviews(List<Review> body) {
+        body.forEach(r -> {
+            if (r.getProductId() < 1) throw new InvalidInputException("Invalid productId: " + r.getProductId());
+        });
+
+        if (body.isEmpty()) {
+            return Flux.empty();
+        }
+
+        log.debug("createReviews: inserts {} reviews with multi-row inserts", body.size());
+        return Flux.range(0, (body.size() + INSERT_ROWS_PER_STATEMENT - 1) / INSERT_ROWS_PER_STATEMENT)
+            .map(i -> body.subList(i * INSERT_ROWS_PER_STATEMENT,
+                Math.min((i + 1) * INSERT_ROWS_PER_STATEMENT, body.size())))
+            .concatMap(reviews -> insertReviews(reviews))
+            .log(null, Level.FINE)
+            .onErrorMap(
+                DataIntegrityViolationException.class,
+                ex -> new InvalidInputException(
+                    "Duplicate key in a batch of " + body.size() + " reviews, Product Id: "
+                        + body.get(0).getProductId()))
+            .thenMany(Flux.fromIterable(body));
+    }
+
+    @Override
+    public Flux<Review> getReviews(int productId) {
+        if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+
+        log.info("Will get reviews for product with id={}", productId);
+
+        return repository.findByProductId(productId)
+            .log(null, Level.FINE)
+            .map(e -> mapper.r2dbcEntityToApi(e))
+            .map(e -> {
+                e.setServiceAddress(serviceUtil.getServiceAddress());
+                return e;
+            });
+    }
+
+    @Override
+    public Flux<Review> getReviewsForProducts(List<Integer> productIds) {
+        productIds.forEach(productId -> {
+            if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+        });
+
+        log.info("Will get reviews for products with ids={}", productIds);
+
+        return repository.findByProductIdInOrderByProductIdAscReviewIdAsc(productIds)
+            .log(null, Level.FINE)
+            .map(e -> mapper.r2dbcEntityToApi(e))
+            .map(e -> {
+                e.setServiceAddress(serviceUtil.getServiceAddress());
+                return e;
+            });
+    }
+
+    @Override
+    public Mono<Void> deleteReviews(int productId) {
+        if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+
+        log.debug("deleteReviews: tries to delete reviews for the product with productId: {}", productId);
+        return repository.deleteByProductId(productId).then();
+    }
+
+    private Mono<Void> insertReviews(List<Review> reviews) {
+        BindMarkers bindMarkers = bindMarkersFactory.create();
+        String values = reviews.stream()
+            .map(review -> IntStream.range(0, REVIEW_COLUMNS)
+                .mapToObj(column -> bindMarkers.next().getPlaceholder())
+                .collect(Collectors.joining(", ", "(", ")")))
+            .collect(Collectors.joining(", "));
+
+        GenericExecuteSpec spec = databaseClient.sql(INSERT_REVIEWS + values);
+        for (int i = 0; i < reviews.size(); i++) {
+            Review review = reviews.get(i);
+            int index = i * REVIEW_COLUMNS;
+            spec = spec.bind(index, 0)
+                .bind(index + 1, review.getProductId())
+                .bind(index + 2, review.getReviewId());
+            spec = bindNullable(spec, index + 3, review.getAuthor());
+            spec = bindNullable(spec, index + 4, review.getSubject());
+            spec = bindNullable(spec, index + 5, review.getContent());
+        }
+        return spec.then();
+    }
+
+    private static GenericExecuteSpec bindNullable(GenericExecuteSpec spec, int index, String value) {
+        return value == null ? spec.bindNull(index, String.class) : spec.bind(index, value);
+    }
+}
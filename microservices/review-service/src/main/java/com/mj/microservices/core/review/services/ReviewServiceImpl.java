@@ -6,18 +6,22 @@ import com.mj.microservices.core.review.persistence.ReviewEntity;
 import com.mj.microservices.core.review.persistence.ReviewRepository;
 import com.mj.util.exceptions.InvalidInputException;
 import com.mj.util.http.ServiceUtil;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
 @RestController
+@Profile("!r2dbc")
 @Slf4j
 public class ReviewServiceImpl implements ReviewService {
 
@@ -37,9 +41,13 @@ public class ReviewServiceImpl implements ReviewService {
     }
 
     @Override
-    public Review createReview(Review body) {
+    public Mono<Review> createReview(Review body) {
         if (body.getProductId() < 1) throw new InvalidInputException("Invalid productId: " + body.getProductId());
 
+        return Mono.fromCallable(() -> internalCreateReview(body)).subscribeOn(scheduler);
+    }
+
+    private Review internalCreateReview(Review body) {
         try {
             ReviewEntity entity = mapper.apiToEntity(body);
             ReviewEntity newEntity = repository.save(entity);
@@ -52,6 +60,34 @@ public class ReviewServiceImpl implements ReviewService {
         }
     }
 
+    /**
+     * Saves all reviews in one transaction, Hibernate groups the inserts into JDBC batches of
+     * spring.jpa.properties.hibernate.jdbc.batch_size statements.
+     */
+    @Override
+    public Flux<Review> createReviews(List<Review> body) {
+        body.forEach(r -> {
+            if (r.getProductId() < 1) throw new InvalidInputException("Invalid productId: " + r.getProductId());
+        });
+
+        return Mono.fromCallable(() -> internalCreateReviews(body)).subscribeOn(scheduler)
+            .flatMapMany(Flux::fromIterable);
+    }
+
+    private List<Review> internalCreateReviews(List<Review> body) {
+        try {
+            List<ReviewEntity> newEntities = new ArrayList<>(body.size());
+            repository.saveAll(mapper.apiListToEntityList(body)).forEach(newEntities::add);
+
+            log.debug("createReviews: created {} review entities", newEntities.size());
+            return mapper.entityListToApiList(newEntities);
+
+        } catch (DataIntegrityViolationException dive) {
+            throw new InvalidInputException("Duplicate key in a batch of " + body.size() + " reviews, Product Id: "
+                + body.get(0).getProductId());
+        }
+    }
+
     @Override
     public Flux<Review> getReviews(int productId) {
 
@@ -70,6 +106,18 @@ public class ReviewServiceImpl implements ReviewService {
         */
     }
 
+    @Override
+    public Flux<Review> getReviewsForProducts(List<Integer> productIds) {
+
+        productIds.forEach(productId -> {
+            if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+        });
+
+        log.info("Will get reviews for products with ids={}", productIds);
+
+        return asyncFlux(() -> Flux.fromIterable(getByProductIds(productIds))).log(null, Level.FINE);
+    }
+
     protected List<Review> getByProductId(int productId) {
         List<ReviewEntity> byProductId = repository.findByProductId(productId);
         List<Review> reviews = mapper.entityListToApiList(byProductId);
@@ -80,9 +128,24 @@ public class ReviewServiceImpl implements ReviewService {
         return reviews;
     }
 
+    protected List<Review> getByProductIds(List<Integer> productIds) {
+        List<ReviewEntity> byProductIds = repository.findByProductIdInOrderByProductIdAscReviewIdAsc(productIds);
+        List<Review> reviews = mapper.entityListToApiList(byProductIds);
+        reviews.forEach(r -> r.setServiceAddress(serviceUtil.getServiceAddress()));
+
+        log.debug("getReviewsForProducts: response size : {}", reviews.size());
+
+        return reviews;
+    }
+
     @Override
-    public void deleteReviews(int productId) {
+    public Mono<Void> deleteReviews(int productId) {
         if (productId < 1) throw new InvalidInputException("Invalid productId: " + productId);
+
+        return Mono.fromRunnable(() -> internalDeleteReviews(productId)).subscribeOn(scheduler).then();
+    }
+
+    private void internalDeleteReviews(int productId) {
         log.debug("deleteReviews: tries to delete reviews for the product with productId: {}", productId);
         repository.deleteAll(repository.findByProductId(productId));
     }
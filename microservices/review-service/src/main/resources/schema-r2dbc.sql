@@ -0,0 +1,11 @@
+CREATE TABLE IF NOT EXISTS reviews (
+    id         INT          NOT NULL AUTO_INCREMENT,
+    version    INT          NOT NULL,
+    product_id INT          NOT NULL,
+    review_id  INT          NOT NULL,
+    author     VARCHAR(255),
+    subject    VARCHAR(255),
+    content    VARCHAR(255),
+    PRIMARY KEY (id),
+    CONSTRAINT review_unique_idx UNIQUE (product_id, review_id)
+);
@@ -0,0 +1,75 @@
+package com.mj.microservices.core.review;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.mj.microservices.core.review.JdbcSchedulerExecutor.Mode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class JdbcSchedulerExecutorTest {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private JdbcSchedulerExecutor executor;
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdown();
+	}
+
+	@Test
+	void fallsBackToFixedWithoutVirtualThreads() {
+		assumeTrue(Runtime.version().feature() < 21, "virtual threads are available");
+
+		executor = new JdbcSchedulerExecutor(Mode.VIRTUAL, 2, meterRegistry);
+
+		assertThat(meterRegistry.get("review.jdbc.scheduler.queue.wait").tag("mode", "fixed").timer()).isNotNull();
+		assertThat(meterRegistry.get("review.jdbc.scheduler.active").tag("mode", "fixed").gauge()).isNotNull();
+	}
+
+	@Test
+	void boundsConcurrentCallsByPoolSize() throws InterruptedException {
+		executor = new JdbcSchedulerExecutor(Mode.VIRTUAL, 2, meterRegistry);
+		String mode = Runtime.version().feature() >= 21 ? "virtual" : "fixed";
+
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(6);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		for (int i = 0; i < 6; i++) {
+			executor.execute(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					running.decrementAndGet();
+					done.countDown();
+				}
+			});
+		}
+
+		for (int i = 0; i < 200 && running.get() < 2; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(50);
+		assertThat(running.get()).isEqualTo(2);
+		assertThat(meterRegistry.get("review.jdbc.scheduler.active").tag("mode", mode).gauge().value()).isEqualTo(2);
+
+		release.countDown();
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(maxRunning.get()).isEqualTo(2);
+		assertThat(meterRegistry.get("review.jdbc.scheduler.queue.wait").tag("mode", mode).timer().count()).isEqualTo(6);
+		// The permit is released once the call has returned
+		for (int i = 0; i < 200 && meterRegistry.get("review.jdbc.scheduler.active").gauge().value() > 0; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(meterRegistry.get("review.jdbc.scheduler.active").tag("mode", mode).gauge().value()).isZero();
+	}
+}
@@ -1,27 +1,47 @@
 package com.mj.microservices.core.review;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.fail;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mj.api.core.review.Review;
 import com.mj.api.event.Event;
 import com.mj.api.event.Event.Type;
+import com.mj.api.event.EventCodec;
+import com.mj.microservices.core.review.persistence.ReviewEntity;
 import com.mj.microservices.core.review.persistence.ReviewRepository;
-import com.mj.util.exceptions.InvalidInputException;
+import com.mj.microservices.core.review.services.MessageProcessor;
+import com.mj.microservices.core.review.services.ReviewServiceImpl;
+import com.mj.util.metrics.ReactiveMetrics;
+import com.mj.util.tracing.InMemorySpanReporter;
+import com.mj.util.tracing.ReactiveTracing;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.cloud.stream.messaging.Sink;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpStatus;
-import org.springframework.integration.channel.AbstractMessageChannel;
-import org.springframework.messaging.MessagingException;
-import org.springframework.messaging.support.GenericMessage;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+import zipkin2.Span;
 
 @SpringBootTest(
 	webEnvironment = RANDOM_PORT,
@@ -29,7 +49,10 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
 		"spring.datasource.driver-class-name=org.h2.Driver",
 		"spring.datasource.url=jdbc:h2:mem:review-db",
-		"eureka.client.enabled=false"})
+		"app.messaging.back-off-initial-interval=1ms",
+		"eureka.client.enabled=false",
+		"app.tracing.exporter=memory"})
+@Import(TestChannelBinderConfiguration.class)
 public class ReviewServiceApplicationTests {
 
 	@Autowired
@@ -39,13 +62,32 @@ public class ReviewServiceApplicationTests {
 	private ReviewRepository repository;
 
 	@Autowired
-	private Sink channels;
+	private ReviewServiceImpl reviewService;
 
-	private AbstractMessageChannel input = null;
+	@Autowired
+	private MessageProcessor messageProcessor;
+
+	@Autowired
+	private StreamBridge streamBridge;
+
+	@Autowired
+	private ReactiveTracing tracing;
+
+	@Autowired
+	private InMemorySpanReporter spans;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private InputDestination source;
+
+	@Autowired
+	private OutputDestination target;
 
 	@BeforeEach
 	public void setupDb() {
-		input = (AbstractMessageChannel) channels.input();
+		target.clear();
 		repository.deleteAll();
 	}
 
@@ -68,6 +110,42 @@ public class ReviewServiceApplicationTests {
 			.jsonPath("$[2].reviewId").isEqualTo(3);
 	}
 
+	@Test
+	public void getReviewsByProductIdAsStream() {
+
+		int productId = 1;
+
+		sendCreateReviewEvent(productId, 1);
+		sendCreateReviewEvent(productId, 2);
+
+		StepVerifier.create(client.get()
+				.uri("/review?productId=" + productId)
+				.accept(APPLICATION_NDJSON)
+				.exchange()
+				.expectStatus().isOk()
+				.expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON)
+				.returnResult(Review.class)
+				.getResponseBody())
+			.expectNextMatches(review -> review.getReviewId() == 1)
+			.expectNextMatches(review -> review.getReviewId() == 2)
+			.verifyComplete();
+	}
+
+	@Test
+	public void getReviewsForProducts() {
+
+		sendCreateReviewEvent(1, 1);
+		sendCreateReviewEvent(2, 1);
+		sendCreateReviewEvent(2, 2);
+		sendCreateReviewEvent(3, 1);
+
+		getAndVerifyReviewsByProductId("?productIds=2,1", OK)
+			.jsonPath("$.length()").isEqualTo(3)
+			.jsonPath("$[0].productId").isEqualTo(1)
+			.jsonPath("$[1].productId").isEqualTo(2)
+			.jsonPath("$[2].productId").isEqualTo(2);
+	}
+
 	@Test
 	public void duplicateError() {
 
@@ -80,19 +158,105 @@ public class ReviewServiceApplicationTests {
 
 		assertEquals(1, repository.count());
 
-		try {
-			sendCreateReviewEvent(productId, reviewId);
-			fail("Expected a MessagingException here!");
-		} catch (MessagingException me) {
-			if (me.getCause() instanceof InvalidInputException)	{
-				InvalidInputException iie = (InvalidInputException)me.getCause();
-				assertEquals("Duplicate key, Product Id: 1, Review Id:1", iie.getMessage());
-			} else {
-				fail("Expected a InvalidInputException as the root cause!");
-			}
-		}
+		sendCreateReviewEvent(productId, reviewId);
+		assertDeadLetter("Duplicate key, Product Id: 1, Review Id:1");
+
+		assertEquals(1, repository.count());
+	}
+
+	@Test
+	public void dropRedeliveredEvent() {
+
+		Event<Integer, Review> event = createReviewEvent(1, 1);
+
+		sendEvent(event);
+		sendEvent(event);
 
 		assertEquals(1, repository.count());
+		assertThat(target.receive(0, "error.reviews.reviewsGroup")).isNull();
+	}
+
+	@Test
+	public void createReviewsBatch() {
+
+		int productId = 1;
+
+		sendCreateReviewsBatchEvent(productId, 1, 2, 3);
+
+		assertEquals(3, repository.findByProductId(productId).size());
+
+		sendCreateReviewsBatchEvent(productId, 3, 4);
+		assertDeadLetter("Duplicate key in a batch of 2 reviews, Product Id: 1");
+
+		assertEquals(3, repository.findByProductId(productId).size());
+	}
+
+	@Test
+	public void createReviewsBatchFromJsonEvent() throws Exception {
+
+		List<Review> reviews = List.of(
+			new Review(1, 1, "Author 1", "Subject 1", "Content 1", "SA"),
+			new Review(1, 2, "Author 2", "Subject 2", "Content 2", "SA"));
+		source.send(MessageBuilder.withPayload(objectMapper.writeValueAsBytes(Event.createBatch(1, reviews)))
+			.setHeader("contentType", "application/json")
+			.build(), "reviews");
+
+		for (int i = 0; i < 50 && repository.findByProductId(1).size() < 2; i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(2, repository.findByProductId(1).size());
+		assertThat(target.receive(0, "error.reviews.reviewsGroup")).isNull();
+	}
+
+	@Test
+	public void createReviewFromBinaryEvent() throws InterruptedException {
+
+		Review review = new Review(1, 1, "Author 1", "Subject 1", "Content 1", "SA");
+		source.send(MessageBuilder.withPayload(EventCodec.encode(new Event<>(Type.CREATE, 1, review)))
+			.setHeader("contentType", EventCodec.CONTENT_TYPE)
+			.build(), "reviews");
+
+		// The binding hands the event over to the jdbcScheduler, so the insert completes asynchronously
+		for (int i = 0; i < 50 && repository.findByProductId(1).isEmpty(); i++) {
+			Thread.sleep(100);
+		}
+		assertEquals(1, repository.findByProductId(1).size());
+	}
+
+	@Test
+	public void keepOrderPerProductAcrossLanes() {
+
+		MessageProcessor lanes = new MessageProcessor(reviewService, streamBridge, new ReactiveMetrics(new SimpleMeterRegistry()), tracing, 4, 3, Duration.ofMillis(1), 1, Duration.ofMillis(50), 100);
+
+		List<Event<Integer, Review>> events = new ArrayList<>();
+		for (int productId = 1; productId <= 8; productId++) {
+			events.add(createReviewEvent(productId, 1));
+			events.add(new Event<>(Type.DELETE, productId, null));
+			events.add(createReviewEvent(productId, 2));
+			events.add(createReviewEvent(productId, 3));
+		}
+
+		lanes.process(Flux.fromIterable(events).map(event -> MessageBuilder.withPayload(event).build())).block();
+
+		for (int productId = 1; productId <= 8; productId++) {
+			assertThat(repository.findByProductId(productId))
+				.extracting(ReviewEntity::getReviewId)
+				.containsExactlyInAnyOrder(2, 3);
+		}
+		assertThat(target.receive(0, "error.reviews.reviewsGroup")).isNull();
+	}
+
+	@Test
+	public void processEventContinuesTraceOfMessage() {
+
+		String traceId = "463ac35c9f6413ad48485a3953bb6124";
+		messageProcessor.apply(Flux.just(MessageBuilder.withPayload(createReviewEvent(1, 1))
+			.setHeader(ReactiveTracing.B3_HEADER, traceId + "-a2fb4a1d1a96d312-1")
+			.build())).block();
+
+		assertThat(spans.getTrace(traceId))
+			.extracting(Span::kind, Span::name, Span::parentId)
+			.containsExactly(tuple(Span.Kind.CONSUMER, "process create", "a2fb4a1d1a96d312"));
 	}
 
 	@Test
@@ -200,13 +364,33 @@ public class ReviewServiceApplicationTests {
 	}
 
 	private void sendCreateReviewEvent(int productId, int reviewId) {
+		sendEvent(createReviewEvent(productId, reviewId));
+	}
+
+	private Event<Integer, Review> createReviewEvent(int productId, int reviewId) {
 		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
-		Event<Integer, Review> event = new Event<>(Type.CREATE, productId, review);
-		input.send(new GenericMessage<>(event));
+		return new Event<>(Type.CREATE, productId, review);
+	}
+
+	private void sendCreateReviewsBatchEvent(int productId, int... reviewIds) {
+		List<Review> reviews = Arrays.stream(reviewIds)
+			.mapToObj(reviewId -> new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA"))
+			.collect(Collectors.toList());
+		sendEvent(Event.createBatch(productId, reviews));
 	}
 
 	private void sendDeleteReviewEvent(int productId) {
 		Event<Integer, Review> event = new Event(Type.DELETE, productId, null);
-		input.send(new GenericMessage<>(event));
+		sendEvent(event);
+	}
+
+	private void sendEvent(Event<Integer, Review> event) {
+		messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+	}
+
+	private void assertDeadLetter(String expectedExceptionMessage) {
+		Message<byte[]> deadLetter = target.receive(0, "error.reviews.reviewsGroup");
+		assertThat(deadLetter).isNotNull();
+		assertThat(deadLetter.getHeaders().get("x-exception-message")).isEqualTo(expectedExceptionMessage);
 	}
 }
@@ -0,0 +1,103 @@
+package com.mj.microservices.core.review;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mj.api.core.review.Review;
+import com.mj.api.event.Event;
+import com.mj.api.event.Event.Type;
+import com.mj.microservices.core.review.persistence.ReviewRepository;
+import com.mj.microservices.core.review.services.MessageProcessor;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(
+	webEnvironment = RANDOM_PORT,
+	properties = {
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+		"spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.url=jdbc:h2:mem:review-db-batch",
+		"app.messaging.back-off-initial-interval=1ms",
+		"eureka.client.enabled=false"})
+@Import(TestChannelBinderConfiguration.class)
+@ActiveProfiles("batch")
+public class ReviewServiceBatchTests {
+
+	@Autowired
+	private ReviewRepository repository;
+
+	@Autowired
+	private MessageProcessor messageProcessor;
+
+	@Autowired
+	private OutputDestination target;
+
+	private static final String DEAD_LETTERS = "error.reviews.reviewsGroup";
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@BeforeEach
+	public void setupDb() {
+		target.clear();
+		repository.deleteAll();
+	}
+
+	@Test
+	public void processBatch() {
+
+		sendBatch(
+			createReviewEvent(1, 1),
+			createReviewEvent(1, 2),
+			createReviewEvent(2, 1),
+			new Event<>(Type.DELETE, 2, null),
+			createReviewEvent(3, 1));
+
+		assertEquals(2, repository.findByProductId(1).size());
+		assertEquals(0, repository.findByProductId(2).size());
+		assertEquals(1, repository.findByProductId(3).size());
+		assertThat(target.receive(0, DEAD_LETTERS)).isNull();
+	}
+
+	@Test
+	public void deadLetterFailedEventsOnly() throws IOException {
+
+		sendBatch(createReviewEvent(1, 1));
+
+		sendBatch(
+			createReviewEvent(1, 1),
+			createReviewEvent(1, 2),
+			createReviewEvent(1, 3));
+
+		assertEquals(3, repository.findByProductId(1).size());
+
+		Message<byte[]> deadLetter = target.receive(0, DEAD_LETTERS);
+		assertThat(target.receive(0, DEAD_LETTERS)).isNull();
+		assertThat(mapper.readTree(deadLetter.getPayload()).at("/data/reviewId").asInt()).isEqualTo(1);
+		assertThat(deadLetter.getHeaders().get("x-exception-message"))
+			.isEqualTo("Duplicate key, Product Id: 1, Review Id:1");
+	}
+
+	private Event<Integer, Review> createReviewEvent(int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		return new Event<>(Type.CREATE, productId, review);
+	}
+
+	@SafeVarargs
+	private void sendBatch(Event<Integer, Review>... events) {
+		messageProcessor.processBatch(Arrays.stream(events).map(event -> MessageBuilder.withPayload(event).build()).toList())
+			.block();
+	}
+}
@@ -0,0 +1,154 @@
+package com.mj.microservices.core.review;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+
+import com.mj.api.core.review.Review;
+import com.mj.api.event.Event;
+import com.mj.api.event.Event.Type;
+import com.mj.microservices.core.review.persistence.ReviewR2dbcRepository;
+import com.mj.microservices.core.review.services.MessageProcessor;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+@SpringBootTest(
+	webEnvironment = RANDOM_PORT,
+	properties = {
+		"spring.r2dbc.url=r2dbc:h2:mem:///review-db-r2dbc;MODE=MySQL;DB_CLOSE_DELAY=-1",
+		"app.messaging.back-off-initial-interval=1ms",
+		"eureka.client.enabled=false"})
+@Import(TestChannelBinderConfiguration.class)
+@ActiveProfiles("r2dbc")
+public class ReviewServiceR2dbcTests {
+
+	@Autowired
+	private WebTestClient client;
+
+	@Autowired
+	private ReviewR2dbcRepository repository;
+
+	@Autowired
+	private MessageProcessor messageProcessor;
+
+	@Autowired
+	private OutputDestination target;
+
+	@BeforeEach
+	public void setupDb() {
+		target.clear();
+		repository.deleteAll().block();
+	}
+
+	@Test
+	public void getReviewsByProductId() {
+
+		int productId = 1;
+
+		assertEquals(0, repository.findByProductId(productId).count().block());
+
+		sendCreateReviewEvent(productId, 1);
+		sendCreateReviewEvent(productId, 2);
+		sendCreateReviewEvent(productId, 3);
+
+		assertEquals(3, repository.findByProductId(productId).count().block());
+
+		client.get()
+			.uri("/review?productId=" + productId)
+			.accept(APPLICATION_JSON)
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().contentType(APPLICATION_JSON)
+			.expectBody()
+			.jsonPath("$.length()").isEqualTo(3)
+			.jsonPath("$[2].productId").isEqualTo(productId)
+			.jsonPath("$[2].reviewId").isEqualTo(3);
+	}
+
+	@Test
+	public void duplicateError() {
+
+		int productId = 1;
+		int reviewId = 1;
+
+		sendCreateReviewEvent(productId, reviewId);
+
+		assertEquals(1, repository.count().block());
+
+		sendCreateReviewEvent(productId, reviewId);
+		assertDeadLetter("Duplicate key, Product Id: 1, Review Id:1");
+
+		assertEquals(1, repository.count().block());
+	}
+
+	@Test
+	public void createReviewsBatch() {
+
+		int productId = 1;
+
+		sendCreateReviewsBatchEvent(productId, 1, 2, 3);
+
+		assertEquals(3, repository.findByProductId(productId).count().block());
+
+		sendCreateReviewsBatchEvent(productId, 3, 4);
+		assertDeadLetter("Duplicate key in a batch of 2 reviews, Product Id: 1");
+	}
+
+	@Test
+	public void deleteReviews() {
+
+		int productId = 1;
+
+		sendCreateReviewEvent(productId, 1);
+		sendCreateReviewEvent(productId + 1, 1);
+		assertEquals(1, repository.findByProductId(productId).count().block());
+
+		sendDeleteReviewEvent(productId);
+		assertEquals(0, repository.findByProductId(productId).count().block());
+		assertEquals(1, repository.count().block());
+
+		sendDeleteReviewEvent(productId);
+	}
+
+	private void sendCreateReviewEvent(int productId, int reviewId) {
+		Review review = new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA");
+		Event<Integer, Review> event = new Event<>(Type.CREATE, productId, review);
+		sendEvent(event);
+	}
+
+	private void sendCreateReviewsBatchEvent(int productId, int... reviewIds) {
+		List<Review> reviews = Arrays.stream(reviewIds)
+			.mapToObj(reviewId -> new Review(productId, reviewId, "Author " + reviewId, "Subject " + reviewId, "Content " + reviewId, "SA"))
+			.collect(Collectors.toList());
+		sendEvent(Event.createBatch(productId, reviews));
+	}
+
+	private void sendDeleteReviewEvent(int productId) {
+		Event<Integer, Review> event = new Event(Type.DELETE, productId, null);
+		sendEvent(event);
+	}
+
+	private void sendEvent(Event<Integer, Review> event) {
+		messageProcessor.apply(Flux.just(MessageBuilder.withPayload(event).build())).block();
+	}
+
+	private void assertDeadLetter(String expectedExceptionMessage) {
+		Message<byte[]> deadLetter = target.receive(0, "error.reviews.reviewsGroup");
+		assertThat(deadLetter).isNotNull();
+		assertThat(deadLetter.getHeaders().get("x-exception-message")).isEqualTo(expectedExceptionMessage);
+	}
+}
@@ -214,6 +214,13 @@ assertEqual $PROD_ID_NO_REVS $(echo $RESPONSE | jq .productId)
 assertEqual 3 $(echo $RESPONSE | jq ".recommendations | length")
 assertEqual 0 $(echo $RESPONSE | jq ".reviews | length")
 
+# Verify that a batch request returns the found products in requested order and skips $PROD_ID_NOT_FOUND
+assertCurl 200 "curl \"http://$HOST:$PORT/product-composite?ids=$PROD_ID_NO_REVS,$PROD_ID_NOT_FOUND,$PROD_ID_REVS_RECS\" -s"
+assertEqual 2 $(echo $RESPONSE | jq "length")
+assertEqual $PROD_ID_NO_REVS $(echo $RESPONSE | jq ".[0].productId")
+assertEqual $PROD_ID_REVS_RECS $(echo $RESPONSE | jq ".[1].productId")
+assertEqual 3 $(echo $RESPONSE | jq ".[1].reviews | length")
+
 # Verify that a 422 (Unprocessable Entity) error is returned for a productId that is out of range (-1)
 assertCurl 422 "curl http://$HOST:$PORT/product-composite/-1 -s"
 assertEqual "\"Invalid productId: -1\"" "$(echo $RESPONSE | jq .message)"
@@ -0,0 +1,50 @@
+package com.mj.util.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Tags every meter with the name of the service and publishes percentile histograms for the
+ * request, repository and database timers of Spring Boot, so that the latency of each hop can be
+ * compared on /actuator/prometheus. The timers of ReactiveMetrics publish theirs themselves.
+ *
+ * http.server.requests is tagged by endpoint, spring.data.repository.invocations by repository
+ * method, for reactive repositories until the returned publisher terminates.
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String SERVICE_TAG = "service";
+
+    private static final Set<String> HISTOGRAM_TIMERS = Set.of(
+        "http.server.requests",
+        "spring.data.repository.invocations",
+        "mongodb.driver.commands");
+
+    @Bean
+    public MeterFilter serviceTag(@Value("${spring.application.name}") String service) {
+        return MeterFilter.commonTags(Tags.of(SERVICE_TAG, service));
+    }
+
+    @Bean
+    public MeterFilter percentileHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!HISTOGRAM_TIMERS.contains(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                    .percentilesHistogram(true)
+                    .build()
+                    .merge(config);
+            }
+        };
+    }
+}
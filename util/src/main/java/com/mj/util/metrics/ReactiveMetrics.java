@@ -0,0 +1,67 @@
+package com.mj.util.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Times a Mono or Flux from subscription until it terminates or is cancelled, in a timer with a
+ * percentile histogram and an outcome tag of SUCCESS, ERROR or CANCELLED.
+ */
+@Component
+public class ReactiveMetrics {
+
+    /**
+     * The calls of the composite to the core services and the broker, tagged by target and operation.
+     */
+    public static final String DOWNSTREAM_CALLS = "downstream.calls";
+
+    /**
+     * The events applied by a MessageProcessor, tagged by event type, BULK for bulk inserts.
+     */
+    public static final String EVENT_PROCESSING = "event.processing";
+
+    private final MeterRegistry meterRegistry;
+
+    public ReactiveMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param tags key value pairs
+     */
+    public <T> Mono<T> time(String name, Mono<T> mono, String... tags) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return mono.doFinally(signal -> sample.stop(timer(name, signal, tags)));
+        });
+    }
+
+    /**
+     * @param tags key value pairs
+     */
+    public <T> Flux<T> time(String name, Flux<T> flux, String... tags) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return flux.doFinally(signal -> sample.stop(timer(name, signal, tags)));
+        });
+    }
+
+    private Timer timer(String name, SignalType signal, String[] tags) {
+        return Timer.builder(name)
+            .tags(tags)
+            .tag("outcome", outcome(signal))
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    private static String outcome(SignalType signal) {
+        if (signal == SignalType.ON_COMPLETE) {
+            return "SUCCESS";
+        }
+        return signal == SignalType.ON_ERROR ? "ERROR" : "CANCELLED";
+    }
+}
@@ -0,0 +1,88 @@
+package com.mj.util.tracing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import zipkin2.Call;
+import zipkin2.Callback;
+import zipkin2.codec.Encoding;
+import zipkin2.reporter.Sender;
+
+/**
+ * Appends the spans of an AsyncReporter to a file, one Zipkin JSON v2 span per line, so that a
+ * local run can be traced without a Zipkin server. The reporter writes from its own thread.
+ */
+class FileSender extends Sender {
+
+    private final OutputStream out;
+
+    FileSender(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.out = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public Encoding encoding() {
+        return Encoding.JSON;
+    }
+
+    @Override
+    public int messageMaxBytes() {
+        return 512 * 1024;
+    }
+
+    @Override
+    public int messageSizeInBytes(List<byte[]> encodedSpans) {
+        return encoding().listSizeInBytes(encodedSpans);
+    }
+
+    @Override
+    public Call<Void> sendSpans(List<byte[]> encodedSpans) {
+        return new WriteCall(encodedSpans);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private synchronized void write(List<byte[]> encodedSpans) throws IOException {
+        for (byte[] span : encodedSpans) {
+            out.write(span);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private class WriteCall extends Call.Base<Void> {
+
+        private final List<byte[]> encodedSpans;
+
+        WriteCall(List<byte[]> encodedSpans) {
+            this.encodedSpans = encodedSpans;
+        }
+
+        @Override
+        protected Void doExecute() throws IOException {
+            write(encodedSpans);
+            return null;
+        }
+
+        @Override
+        protected void doEnqueue(Callback<Void> callback) {
+            try {
+                callback.onSuccess(doExecute());
+            } catch (IOException | RuntimeException e) {
+                callback.onError(e);
+            }
+        }
+
+        @Override
+        public Call<Void> clone() {
+            return new WriteCall(encodedSpans);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mj.util.tracing;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import zipkin2.Span;
+import zipkin2.reporter.Reporter;
+
+/**
+ * Keeps the last capacity finished spans in memory, for tests and local runs.
+ */
+public class InMemorySpanReporter implements Reporter<Span> {
+
+    private final int capacity;
+    private final Deque<Span> spans = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public InMemorySpanReporter(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void report(Span span) {
+        spans.addLast(span);
+        if (size.incrementAndGet() > capacity && spans.pollFirst() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    public List<Span> getSpans() {
+        return new ArrayList<>(spans);
+    }
+
+    public List<Span> getTrace(String traceId) {
+        List<Span> trace = new ArrayList<>();
+        for (Span span : spans) {
+            if (span.traceId().equals(traceId)) {
+                trace.add(span);
+            }
+        }
+        return trace;
+    }
+
+    public void clear() {
+        spans.clear();
+        size.set(0);
+    }
+}
@@ -0,0 +1,124 @@
+package com.mj.util.tracing;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.B3SingleFormat;
+import brave.propagation.TraceContext;
+import brave.propagation.TraceContextOrSamplingFlags;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Carries the trace of a request in the Reactor Context, which follows it across threads where
+ * thread locals do not, and across the message bus in a b3 header.
+ *
+ * The server span of TracingWebFilter is the parent of the spans started for the same request:
+ * the client spans of TracingExchangeFilter and the producer spans of produce. A consumer span
+ * continues the trace of the b3 header of the message it processes, so the gap between the end
+ * of a producer span and the start of its consumer span is the lag of the event on the bus.
+ */
+@Component
+public class ReactiveTracing {
+
+    /**
+     * The message header with the producer span in B3 single format.
+     */
+    public static final String B3_HEADER = "b3";
+
+    private final Tracer tracer;
+
+    public ReactiveTracing(Tracing tracing) {
+        this.tracer = tracing.tracer();
+    }
+
+    /**
+     * Sends in a producer span, child of the span in the Reactor Context. The send function is
+     * given the headers that carry the producer span to the consumer.
+     */
+    public <T> Mono<T> produce(String destination, Function<Map<String, String>, Mono<T>> send) {
+        return Mono.deferContextual(context -> {
+            Span span = nextSpan(context)
+                .kind(Span.Kind.PRODUCER)
+                .name("send " + destination)
+                .tag("messaging.destination", destination)
+                .start();
+            Map<String, String> headers = Map.of(B3_HEADER, B3SingleFormat.writeB3SingleFormat(span.context()));
+            return inSpan(span, Mono.defer(() -> send.apply(headers)));
+        });
+    }
+
+    /**
+     * Processes in one consumer span per message, each continuing the trace of its message and
+     * all ending when processing does, so a bulk insert shows up in the trace of every event.
+     */
+    public <T> Mono<T> consume(String name, List<? extends Map<String, ?>> headers, Mono<T> processing) {
+        return Mono.defer(() -> {
+            List<Span> spans = new ArrayList<>(headers.size());
+            for (Map<String, ?> messageHeaders : headers) {
+                spans.add(tracer.nextSpan(extract(messageHeaders)).kind(Span.Kind.CONSUMER).name(name).start());
+            }
+            if (spans.isEmpty()) {
+                return processing;
+            }
+            return processing
+                .doOnError(error -> spans.forEach(span -> span.error(error)))
+                .doOnTerminate(() -> spans.forEach(Span::finish))
+                .doOnCancel(() -> spans.forEach(Span::finish))
+                .contextWrite(context -> context.put(TraceContext.class, spans.get(0).context()));
+        });
+    }
+
+    /**
+     * The span in the Reactor Context in B3 single format, null without one. Lets work that
+     * continues after the request, like the outbox relay, keep its trace with continueTrace.
+     */
+    public static String currentTrace(ContextView context) {
+        TraceContext trace = context.getOrDefault(TraceContext.class, null);
+        return trace == null ? null : B3SingleFormat.writeB3SingleFormat(trace);
+    }
+
+    /**
+     * @param trace a span in B3 single format, may be null
+     */
+    public static Function<Context, Context> continueTrace(String trace) {
+        TraceContextOrSamplingFlags extracted = trace == null ? null : B3SingleFormat.parseB3SingleFormat(trace);
+        if (extracted == null || extracted.context() == null) {
+            return Function.identity();
+        }
+        return context -> context.put(TraceContext.class, extracted.context());
+    }
+
+    Span nextSpan(ContextView context) {
+        TraceContext parent = context.getOrDefault(TraceContext.class, null);
+        return parent == null ? tracer.nextSpan() : tracer.newChild(parent);
+    }
+
+    /**
+     * Ends the span when the Mono terminates, before the subscriber sees it, or is cancelled, and
+     * makes it the parent of the spans started upstream.
+     */
+    static <T> Mono<T> inSpan(Span span, Mono<T> mono) {
+        return mono
+            .doOnError(span::error)
+            .doOnTerminate(span::finish)
+            .doOnCancel(() -> span.annotate("cancel").finish())
+            .contextWrite(context -> context.put(TraceContext.class, span.context()));
+    }
+
+    private static TraceContextOrSamplingFlags extract(Map<String, ?> headers) {
+        Object value = headers.get(B3_HEADER);
+        if (value instanceof byte[] bytes) {
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        TraceContextOrSamplingFlags extracted = value == null ? null : B3SingleFormat.parseB3SingleFormat(value.toString());
+        return extracted == null ? TraceContextOrSamplingFlags.EMPTY : extracted;
+    }
+}
@@ -0,0 +1,54 @@
+package com.mj.util.tracing;
+
+import brave.Tracing;
+import brave.sampler.Sampler;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import zipkin2.Span;
+import zipkin2.reporter.AsyncReporter;
+import zipkin2.reporter.Reporter;
+import zipkin2.reporter.brave.ZipkinSpanHandler;
+
+/**
+ * Traces with Brave, named by spring.application.name and sampled at app.tracing.sample-rate.
+ *
+ * app.tracing.exporter selects where finished spans go: memory keeps the last
+ * app.tracing.memory.capacity spans in an InMemorySpanReporter, file appends them to
+ * app.tracing.file in Zipkin JSON, and none drops them while the trace is still propagated.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Bean
+    public Tracing tracing(
+        @Value("${spring.application.name}") String service,
+        @Value("${app.tracing.sample-rate:1.0}") float sampleRate,
+        ObjectProvider<Reporter<Span>> reporter) {
+
+        Tracing.Builder builder = Tracing.newBuilder()
+            .localServiceName(service)
+            .sampler(Sampler.create(sampleRate));
+        reporter.ifAvailable(spanReporter -> builder.addSpanHandler(ZipkinSpanHandler.create(spanReporter)));
+        return builder.build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.exporter", havingValue = "memory", matchIfMissing = true)
+    public InMemorySpanReporter inMemorySpanReporter(@Value("${app.tracing.memory.capacity:10000}") int capacity) {
+        return new InMemorySpanReporter(capacity);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.exporter", havingValue = "file")
+    public AsyncReporter<Span> fileSpanReporter(
+        @Value("${app.tracing.file:${java.io.tmpdir}/traces/${spring.application.name}.jsonl}") Path file)
+        throws IOException {
+
+        return AsyncReporter.create(new FileSender(file));
+    }
+}
@@ -0,0 +1,61 @@
+package com.mj.util.tracing;
+
+import brave.Span;
+import brave.Tracing;
+import brave.propagation.TraceContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sends each WebClient request in a client span, child of the span in the Reactor Context, and
+ * passes the span on in B3 headers. The span ends when the response headers arrive.
+ *
+ * Added before the load balancer filter, the span sees the service name as host and names the
+ * remote service with it. A hedged request shows up as a sibling span of the request it hedges.
+ */
+@Component
+public class TracingExchangeFilter implements ExchangeFilterFunction {
+
+    private final ReactiveTracing reactiveTracing;
+    private final TraceContext.Injector<HttpHeaders> injector;
+
+    public TracingExchangeFilter(Tracing tracing, ReactiveTracing reactiveTracing) {
+        this.reactiveTracing = reactiveTracing;
+        this.injector = tracing.propagation().injector(HttpHeaders::set);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> {
+            String method = request.method().name();
+            Span span = reactiveTracing.nextSpan(context)
+                .kind(Span.Kind.CLIENT)
+                .name(method)
+                .remoteServiceName(request.url().getHost())
+                .tag("http.method", method)
+                .tag("http.path", request.url().getPath())
+                .start();
+
+            ClientRequest traced = ClientRequest.from(request)
+                .headers(headers -> injector.inject(span.context(), headers))
+                .build();
+            return ReactiveTracing.inSpan(span, next.exchange(traced)
+                .doOnNext(response -> tagStatus(span, response.rawStatusCode())));
+        });
+    }
+
+    /**
+     * Tags the status code, and like Brave's HTTP instrumentation an error for any status above 399.
+     */
+    static void tagStatus(Span span, int status) {
+        span.tag("http.status_code", String.valueOf(status));
+        if (status < 100 || status > 399) {
+            span.tag("error", String.valueOf(status));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mj.util.tracing;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.TraceContext;
+import brave.propagation.TraceContextOrSamplingFlags;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Handles each request in a server span, continuing the trace of the B3 headers of the caller.
+ * The span is named by the matched route, so that a span name stands for one endpoint.
+ * Actuator requests are not traced.
+ */
+@Component
+public class TracingWebFilter implements WebFilter, Ordered {
+
+    private final Tracer tracer;
+    private final TraceContext.Extractor<HttpHeaders> extractor;
+
+    public TracingWebFilter(Tracing tracing) {
+        this.tracer = tracing.tracer();
+        this.extractor = tracing.propagation().extractor(HttpHeaders::getFirst);
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().value();
+        if (path.startsWith("/actuator")) {
+            return chain.filter(exchange);
+        }
+
+        TraceContextOrSamplingFlags extracted = extractor.extract(request.getHeaders());
+        String method = request.getMethodValue();
+        Span span = tracer.nextSpan(extracted)
+            .kind(Span.Kind.SERVER)
+            .name(method)
+            .tag("http.method", method)
+            .tag("http.path", path)
+            .start();
+
+        return chain.filter(exchange)
+            .doOnError(span::error)
+            .doFinally(signal -> {
+                Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                if (pattern != null) {
+                    span.name(method + " " + pattern);
+                }
+                Integer status = exchange.getResponse().getRawStatusCode();
+                if (status != null) {
+                    TracingExchangeFilter.tagStatus(span, status);
+                }
+                span.finish();
+            })
+            .contextWrite(context -> context.put(TraceContext.class, span.context()));
+    }
+}
@@ -0,0 +1,65 @@
+package com.mj.util.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class ReactiveMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ReactiveMetrics metrics = new ReactiveMetrics(meterRegistry);
+
+    @Test
+    void timesEachSubscriptionByOutcome() {
+        Mono<String> call = metrics.time("calls", Mono.just("ok"), "target", "product");
+
+        StepVerifier.create(call).expectNext("ok").verifyComplete();
+        StepVerifier.create(call).expectNext("ok").verifyComplete();
+        StepVerifier.create(metrics.time("calls", Flux.error(new IllegalStateException()), "target", "product"))
+            .verifyError(IllegalStateException.class);
+
+        assertThat(timer("SUCCESS").count()).isEqualTo(2);
+        assertThat(timer("ERROR").count()).isEqualTo(1);
+    }
+
+    @Test
+    void timesCancelledCalls() {
+        StepVerifier.create(metrics.time("calls", Mono.never(), "target", "product"))
+            .expectSubscription()
+            .thenCancel()
+            .verify(Duration.ofSeconds(1));
+
+        assertThat(timer("CANCELLED").count()).isEqualTo(1);
+    }
+
+    @Test
+    void publishesPercentileHistogram() {
+        List<Boolean> histograms = new ArrayList<>();
+        meterRegistry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                histograms.add(config.isPercentileHistogram());
+                return config;
+            }
+        });
+
+        StepVerifier.create(metrics.time("calls", Mono.just("ok"), "target", "product")).expectNext("ok").verifyComplete();
+
+        assertThat(histograms).containsExactly(true);
+    }
+
+    private Timer timer(String outcome) {
+        return meterRegistry.get("calls").tags("target", "product", "outcome", outcome).timer();
+    }
+}
@@ -0,0 +1,70 @@
+package com.mj.util.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import brave.Tracing;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import zipkin2.Span;
+import zipkin2.reporter.brave.ZipkinSpanHandler;
+
+class TracingExchangeFilterTest {
+
+    private static final String TRACE_ID = "463ac35c9f6413ad48485a3953bb6124";
+    private static final String PARENT_ID = "a2fb4a1d1a96d312";
+
+    private final InMemorySpanReporter spans = new InMemorySpanReporter(100);
+    private final Tracing tracing = Tracing.newBuilder()
+        .localServiceName("product-composite")
+        .addSpanHandler(ZipkinSpanHandler.create(spans))
+        .build();
+    private final TracingExchangeFilter filter = new TracingExchangeFilter(tracing, new ReactiveTracing(tracing));
+    private final AtomicReference<ClientRequest> sent = new AtomicReference<>();
+
+    @AfterEach
+    void tearDown() {
+        tracing.close();
+    }
+
+    @Test
+    void sendsRequestInChildSpanOfContext() {
+        StepVerifier.create(get(HttpStatus.OK)).expectNextCount(1).verifyComplete();
+
+        assertThat(spans.getSpans()).hasSize(1);
+        Span client = spans.getSpans().get(0);
+        assertThat(client.kind()).isEqualTo(Span.Kind.CLIENT);
+        assertThat(client.traceId()).isEqualTo(TRACE_ID);
+        assertThat(client.parentId()).isEqualTo(PARENT_ID);
+        assertThat(client.remoteServiceName()).isEqualTo("product");
+        assertThat(client.tags()).containsEntry("http.status_code", "200").doesNotContainKey("error");
+
+        assertThat(sent.get().headers().getFirst("X-B3-TraceId")).isEqualTo(TRACE_ID);
+        assertThat(sent.get().headers().getFirst("X-B3-SpanId")).isEqualTo(client.id());
+    }
+
+    @Test
+    void tagsErrorStatus() {
+        StepVerifier.create(get(HttpStatus.SERVICE_UNAVAILABLE)).expectNextCount(1).verifyComplete();
+
+        assertThat(spans.getSpans().get(0).tags()).containsEntry("error", "503");
+    }
+
+    private Mono<ClientResponse> get(HttpStatus status) {
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://product/product/1")).build();
+        ExchangeFunction exchange = traced -> {
+            sent.set(traced);
+            return Mono.just(ClientResponse.create(status).build());
+        };
+        return filter.filter(request, exchange)
+            .contextWrite(ReactiveTracing.continueTrace(TRACE_ID + "-" + PARENT_ID + "-1"));
+    }
+}